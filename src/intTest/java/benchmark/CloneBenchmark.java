@@ -0,0 +1,63 @@
+package benchmark;
+
+import game.Game;
+import game.GameFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import util.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures how many games can be cloned per second on the competition maps. Every search node
+ * clones the game, so this bounds the node rate of the search.
+ * <p>
+ * Only runs with -Dbenchmarks=true, as it takes seconds and reports timings instead of checking
+ * results.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public class CloneBenchmark {
+
+    private static final String[] MAPS = {
+            "compMaps/comp2024_04_2p.map",
+            "compMaps/comp2024_04_4p.map",
+            "compMaps/comp2024_04_6p.map",
+            "compMaps/comp2024_04_8p.map"
+    };
+
+    private static final long MEASURE_MILLIS = 2000;
+
+    @Test
+    public void cloneThroughput() {
+
+        Logger.defaultPriority = 3;
+
+        for (String map : MAPS) {
+
+            Game game = GameFactory.createFromFile(map);
+
+            // Warm up the JIT before measuring
+            measure(game, MEASURE_MILLIS / 2);
+
+            long clones = measure(game, MEASURE_MILLIS);
+
+            assertEquals(game.hash(), game.clone().hash());
+
+            System.out.printf("%-28s %3dx%-3d %12.1f clones/s%n", map,
+                    game.getWidth(), game.getHeight(), clones * 1000.0 / MEASURE_MILLIS);
+        }
+    }
+
+    /**
+     * @return The number of clones made within the given time.
+     */
+    private static long measure(Game game, long millis) {
+        long clones = 0;
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            game.clone();
+            clones++;
+        }
+        return clones;
+    }
+}
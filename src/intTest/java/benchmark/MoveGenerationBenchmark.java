@@ -0,0 +1,104 @@
+package benchmark;
+
+import game.Game;
+import game.GameFactory;
+import game.logic.MoveCalculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import util.Logger;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Measures the move generation throughput on synthetic maps of growing size, from 16x16 up to
+ * 256x256. The maps contain walls and transitions along their borders, so rays cross the board
+ * edges like on the competition maps.
+ * <p>
+ * Only runs with -Dbenchmarks=true, as it takes seconds and reports timings instead of checking
+ * results.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public class MoveGenerationBenchmark {
+
+    private static final int[] SIZES = {16, 32, 64, 128, 256};
+
+    private static final long MEASURE_MILLIS = 2000;
+
+    @Test
+    public void moveGenerationThroughput() {
+
+        Logger.defaultPriority = 3;
+
+        for (int size : SIZES) {
+
+            Game game = GameFactory.createFromString(createMap(size, 42));
+
+            // Warm up the JIT before measuring
+            measure(game, MEASURE_MILLIS / 2);
+
+            long[] result = measure(game, MEASURE_MILLIS);
+            long generations = result[0];
+            long moves = result[1];
+
+            assertFalse(game.getValidMoves().isEmpty());
+
+            System.out.printf("%3dx%-3d %10.1f generations/s %12.0f moves/s %10.1f ns/cell%n",
+                    size, size, generations * 1000.0 / MEASURE_MILLIS,
+                    moves * 1000.0 / MEASURE_MILLIS,
+                    MEASURE_MILLIS * 1_000_000.0 / generations / (size * size));
+        }
+    }
+
+    /**
+     * @return The number of generations and the number of moves found within the given time.
+     */
+    private static long[] measure(Game game, long millis) {
+        long generations = 0;
+        long moves = 0;
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            moves += MoveCalculator.getValidMovesForPlayer(game, 1, null).size();
+            generations++;
+        }
+        return new long[]{generations, moves};
+    }
+
+    /**
+     * Creates a square two player map in the format of the map files. Cells are randomly empty,
+     * walls or occupied by one of the players, and every cell of the top row is connected to the
+     * cell below it in the bottom row.
+     */
+    static String createMap(int size, long seed) {
+
+        Random random = new Random(seed);
+        StringBuilder map = new StringBuilder();
+
+        map.append("2\n0\n0 0\n").append(size).append(" ").append(size).append("\n");
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int value = random.nextInt(100);
+                char tile;
+                if (value < 5) {
+                    tile = '-';
+                } else if (value < 17) {
+                    tile = '1';
+                } else if (value < 29) {
+                    tile = '2';
+                } else {
+                    tile = '0';
+                }
+                map.append(tile).append(x < size - 1 ? " " : "\n");
+            }
+        }
+
+        for (int x = 0; x < size; x++) {
+            map.append(x).append(" 0 0 <-> ").append(x).append(" ").append(size - 1)
+                    .append(" 4\n");
+        }
+
+        return map.toString();
+    }
+}
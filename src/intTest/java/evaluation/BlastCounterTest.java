@@ -0,0 +1,138 @@
+package evaluation;
+
+import board.Coordinates;
+import board.CoordinatesExpander;
+import board.Tile;
+import game.Game;
+import game.GameFactory;
+import game.GamePhase;
+import move.MoveList;
+import move.PackedMove;
+import org.junit.jupiter.api.Test;
+import util.PlayoutHelper;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plays random games on the bomb maps, taking back moves now and then, and checks in every
+ * position of the bomb phase that the stones hit by every blast are counted the same as by
+ * expanding the blast, also by a counter updated for the next bomb, and that a blast only
+ * dominates the one on the neighbouring target if it does by the expanded blasts. The blast
+ * footprints are kept for the whole game, as in a search.
+ */
+public class BlastCounterTest {
+
+    @Test
+    public void countsMatchExpandedBlastsOnBombMaps() throws Exception {
+
+        for (String map : PlayoutHelper.listMaps("maps/ue08-bomben", "maps/fightclub")) {
+            Game game = GameFactory.createFromFile(map);
+            BlastFootprints footprints = new BlastFootprints(game);
+
+            PlayoutHelper.playout(map, game, 4,
+                    (message, position, move) -> assertCounts(message, position, footprints, move));
+        }
+    }
+
+    /**
+     * Check the counts of a counter built for the position, and of a copy of it told about the
+     * move, after the move.
+     */
+    private static void assertCounts(String message, Game game, BlastFootprints footprints,
+                                     int move) {
+
+        if (game.getPhase() != GamePhase.BOMB) {
+            return;
+        }
+
+        BlastCounter blastCounter = new BlastCounter(game, footprints);
+        assertCounts(message, game, blastCounter);
+
+        BlastCounter updated = new BlastCounter(blastCounter);
+        updated.removeBlast(PackedMove.getCell(move));
+
+        // A counter told about the bomb counts like one built after it
+        game.executeMove(move);
+        if (game.getPhase() == GamePhase.BOMB) {
+            assertCounts(message + " and " + PackedMove.toString(move), game, updated);
+        }
+        game.undoMove();
+    }
+
+    private static void assertCounts(String message, Game game, BlastCounter blastCounter) {
+
+        int players = game.constants.initialPlayers();
+        MoveList moves = game.getValidMoves();
+
+        for (int i = 0; i < moves.size(); i++) {
+            int cell = PackedMove.getCell(moves.get(i));
+
+            int[] expected = new int[players];
+            for (Coordinates c : expandBlast(game, cell)) {
+                Tile tile = game.getTile(c);
+                if (tile.toPlayerIndex() != -1) {
+                    expected[tile.toPlayerIndex()]++;
+                }
+            }
+
+            int[] actual = new int[players];
+            blastCounter.countHits(cell, actual);
+
+            assertArrayEquals(expected, actual, message + ", target " + cell);
+
+            // The target on the right, if there is one
+            if ((cell + 1) % game.getWidth() != 0
+                    && moves.contains(PackedMove.bomb(cell + 1))) {
+                assertDominance(message + ", targets " + cell + " and " + (cell + 1), game,
+                        blastCounter, cell, cell + 1);
+                assertDominance(message + ", targets " + (cell + 1) + " and " + cell, game,
+                        blastCounter, cell + 1, cell);
+            }
+        }
+    }
+
+    /**
+     * If the counter claims that the blast on the target dominates the one on the other target,
+     * check that it hits every stone the other one hits that the blasts are meant to hit, and no
+     * stone it is meant to spare that the other one does not hit. For the player, those are the
+     * stones of the opponents and its own stones, for an opponent playing against it the other
+     * way round.
+     */
+    private static void assertDominance(String message, Game game, BlastCounter blastCounter,
+                                        int target, int other) {
+
+        int playerIndex = game.getCurrentPlayerNumber() - 1;
+
+        for (boolean forPlayer : new boolean[] {true, false}) {
+            if (!blastCounter.dominates(target, other, playerIndex, forPlayer)) {
+                continue;
+            }
+
+            Set<Coordinates> blast = expandBlast(game, target);
+            Set<Coordinates> otherBlast = expandBlast(game, other);
+
+            for (Coordinates c : otherBlast) {
+                int owner = game.getTile(c).toPlayerIndex();
+                boolean spared = (owner == playerIndex) == forPlayer;
+                assertTrue(owner == -1 || spared || blast.contains(c),
+                        message + ", for player " + forPlayer);
+            }
+            for (Coordinates c : blast) {
+                int owner = game.getTile(c).toPlayerIndex();
+                boolean spared = (owner == playerIndex) == forPlayer;
+                assertTrue(owner == -1 || !spared || otherBlast.contains(c),
+                        message + ", for player " + forPlayer);
+            }
+        }
+    }
+
+    private static Set<Coordinates> expandBlast(Game game, int target) {
+        Set<Coordinates> start = new HashSet<>();
+        start.add(game.getCoordinates(target));
+        return CoordinatesExpander.expandCoordinates(game, start, game.constants.bombRadius());
+    }
+}
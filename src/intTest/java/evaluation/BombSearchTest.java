@@ -0,0 +1,93 @@
+package evaluation;
+
+import clients.SearchTimer;
+import exceptions.OutOfTimeException;
+import game.Game;
+import game.GameFactory;
+import game.GamePhase;
+import move.MoveList;
+import org.junit.jupiter.api.Test;
+import util.PlayoutHelper;
+import util.Timer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plays random games on the bomb maps and checks in the bomb phase that searching a single bomb
+ * deep finds the same move as rating the bombs on their own, that deeper searches leave the game
+ * as it was, and that the pruning of the search keeps the bomb a scan of all bombs picks, for the
+ * player as well as for an opponent playing against it.
+ */
+public class BombSearchTest {
+
+    private static final int DEPTH = 3;
+
+    @Test
+    public void searchMatchesSingleBombsAndRestoresGame() throws Exception {
+
+        for (String map : PlayoutHelper.listMaps("maps/ue08-bomben", "maps/fightclub")) {
+            Game game = GameFactory.createFromFile(map);
+            GameEvaluator evaluator = new GameEvaluator(new BoardInfo(game));
+
+            PlayoutHelper.playout(map, game, 0,
+                    (message, position, move) -> assertSearch(message, position, evaluator));
+        }
+    }
+
+    private static void assertSearch(String message, Game game, GameEvaluator evaluator)
+            throws OutOfTimeException {
+
+        if (game.getPhase() != GamePhase.BOMB) {
+            return;
+        }
+
+        int player = game.getCurrentPlayerNumber();
+        SearchTimer timer = new SearchTimer(new Timer(Long.MAX_VALUE / 2));
+
+        int expected = evaluator.evaluateBombMoves(game, player, timer).first();
+        BombSearch search = new BombSearch(game, player, evaluator, timer);
+        assertEquals(expected, search.findBestMove(1), message);
+
+        String before = game.toString();
+        search.findBestMove(DEPTH);
+        assertEquals(before, game.toString(), message);
+
+        assertFilterKeepsPick(message, game, player, evaluator, timer);
+    }
+
+    /**
+     * Check that {@link BombTargetFilter#filter} keeps the bomb a scan of all bombs picks: the
+     * first one with the highest rating for the player, and the first one with the lowest rating
+     * for an opponent.
+     */
+    private static void assertFilterKeepsPick(String message, Game game, int player,
+                                              GameEvaluator evaluator, SearchTimer timer)
+            throws OutOfTimeException {
+
+        int[] tilesBefore = evaluator.getTileCounts(game);
+        int[] tileDifferencesBefore = evaluator.getTileDifferences(tilesBefore, player - 1);
+        int players = tilesBefore.length;
+
+        BlastCounter blastCounter = new BlastCounter(game, evaluator.getBlastFootprints(game));
+        MoveList moves = game.getValidMoves();
+        int[] ratings = new int[moves.size()];
+        int[] hits = new int[game.getWidth() * game.getHeight() * players];
+
+        BombMoveScorer.score(evaluator, blastCounter, moves, tilesBefore, tileDifferencesBefore,
+                player - 1, new int[players], ratings, hits, false, timer);
+
+        for (boolean forPlayer : new boolean[] {true, false}) {
+            int pick = 0;
+            for (int i = 1; i < moves.size(); i++) {
+                if (forPlayer ? ratings[i] > ratings[pick] : ratings[i] < ratings[pick]) {
+                    pick = i;
+                }
+            }
+
+            MoveList kept = BombTargetFilter.filter(game, player, moves, hits, ratings.clone(),
+                    blastCounter, forPlayer);
+            assertTrue(kept.contains(moves.get(pick)), message + ", for player " + forPlayer);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package game;
+
+import board.Bitboard;
+import board.NeighbourTable;
+import board.Tile;
+import org.junit.jupiter.api.Test;
+import util.PlayoutHelper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Plays random games on every map, taking back moves now and then, and checks that the frontier
+ * kept up-to-date by the board matches the frontier calculated from scratch.
+ */
+public class FrontierTest {
+
+    @Test
+    public void frontierMatchesRecalculationOnRandomPlayouts() throws Exception {
+
+        for (String map : PlayoutHelper.listMaps("maps")) {
+            PlayoutHelper.playout(map, GameFactory.createFromFile(map), 8,
+                    (message, game, move) -> assertFrontier(message, game));
+        }
+    }
+
+    private static void assertFrontier(String message, Game game) {
+
+        if (game.getFrontier() == null) {
+            return;
+        }
+
+        int cells = game.getWidth() * game.getHeight();
+        long[] expected = Bitboard.create(cells);
+        int count = 0;
+
+        for (int cell = 0; cell < cells; cell++) {
+            if (!game.getTile(cell).isUnoccupied()) {
+                continue;
+            }
+            for (int direction = 0; direction < 8; direction++) {
+                int neighbour = game.getNeighbour(cell, direction);
+                if (neighbour == NeighbourTable.NONE) {
+                    continue;
+                }
+                Tile tile = game.getTile(NeighbourTable.getCell(neighbour));
+                if (tile.isPlayer() || tile == Tile.EXPANSION) {
+                    Bitboard.set(expected, cell);
+                    count++;
+                    break;
+                }
+            }
+        }
+
+        assertArrayEquals(expected, game.getFrontier(), message);
+        assertEquals(count, game.getFrontierCount(), message);
+    }
+}
@@ -0,0 +1,47 @@
+package game;
+
+import game.logic.MoveCalculator;
+import move.MoveList;
+import org.junit.jupiter.api.Test;
+import util.PlayoutHelper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Plays random games on every map, taking back moves now and then, and checks that the moves kept
+ * up-to-date by the {@link MoveIndex} equal the moves calculated from scratch by
+ * {@link MoveCalculator#getValidMovesForPlayer(Game, int, long[])} for every player.
+ */
+public class MoveIndexTest {
+
+    @Test
+    public void indexMatchesCalculatorOnRandomPlayouts() throws Exception {
+
+        for (String map : PlayoutHelper.listMaps("maps")) {
+            Game game = GameFactory.createFromFile(map);
+            game.enableMoveIndex();
+
+            PlayoutHelper.playout(map, game, 8,
+                    (message, position, move) -> assertSameMoves(message, position));
+        }
+    }
+
+    private static void assertSameMoves(String message, Game game) {
+
+        if (game.getPhase() != GamePhase.BUILD) {
+            return;
+        }
+
+        MoveList indexed = new MoveList();
+        MoveList calculated = new MoveList();
+        for (int player = 1; player <= game.constants.initialPlayers(); player++) {
+            game.moveIndex.getValidMoves(game, player, true, indexed);
+            assertEquals(MoveCalculator.getValidMovesForPlayer(game, player, null), indexed,
+                    message + ", player " + player);
+
+            game.moveIndex.getValidMoves(game, player, false, indexed);
+            MoveCalculator.getValidMovesForPlayer(game, player, null, false, calculated);
+            assertEquals(calculated, indexed, message + ", player " + player);
+        }
+    }
+}
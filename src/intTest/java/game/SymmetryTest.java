@@ -0,0 +1,167 @@
+package game;
+
+import board.Symmetry;
+import evaluation.GameEvaluator;
+import move.MoveList;
+import move.PackedMove;
+import org.junit.jupiter.api.Test;
+import util.Logger;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the symmetries found on a symmetric and an asymmetric board, that the canonical key of
+ * positions mapped onto each other by a symmetry is equal, and that
+ * {@link GameEvaluator#removeSymmetricMoves} keeps exactly one move of all moves mapped onto each
+ * other.
+ */
+public class SymmetryTest {
+
+    /**
+     * Symmetric under all eight rotations and reflections, but only the rotation by 180 degrees
+     * and the reflections along the diagonals keep the players' numbers.
+     */
+    private static final String SYMMETRIC_MAP = """
+            2
+            0
+            0 0
+            4 4
+            0 0 0 0
+            0 1 2 0
+            0 2 1 0
+            0 0 0 0
+            """;
+
+    /**
+     * The same board with a bonus tile no symmetry maps onto itself.
+     */
+    private static final String ASYMMETRIC_MAP = """
+            2
+            0
+            0 0
+            4 4
+            0 b 0 0
+            0 1 2 0
+            0 2 1 0
+            0 0 0 0
+            """;
+
+    @Test
+    public void findsSymmetriesOfSymmetricBoard() {
+
+        Logger.defaultPriority = 3;
+
+        Game game = GameFactory.createFromString(SYMMETRIC_MAP);
+
+        assertEquals(List.of("identity", "rotation by 180 degrees",
+                        "vertical reflection (players 1->2 2->1)",
+                        "horizontal reflection (players 1->2 2->1)",
+                        "rotation by 90 degrees (players 1->2 2->1)",
+                        "rotation by 270 degrees (players 1->2 2->1)",
+                        "diagonal reflection", "anti-diagonal reflection"),
+                game.getSymmetries().stream().map(Symmetry::toString).toList());
+        assertEquals(List.of("rotation by 180 degrees", "diagonal reflection",
+                        "anti-diagonal reflection"),
+                game.getStabilizingSymmetries().stream().map(Symmetry::toString).toList());
+
+        assertSymmetricMovesEquivalent(game);
+        assertOneMovePerClass(game);
+    }
+
+    @Test
+    public void findsNoSymmetriesOfAsymmetricBoard() {
+
+        Logger.defaultPriority = 3;
+
+        Game game = GameFactory.createFromString(ASYMMETRIC_MAP);
+
+        assertEquals(List.of("identity"),
+                game.getSymmetries().stream().map(Symmetry::toString).toList());
+        assertTrue(game.getStabilizingSymmetries().isEmpty());
+
+        MoveList moves = game.getValidMoves();
+        assertEquals(moves, GameEvaluator.removeSymmetricMoves(game, moves));
+    }
+
+    /**
+     * Execute every valid move and its image under every symmetry of the position, and compare
+     * the canonical keys of the resulting positions. Moves that are no images of each other have
+     * to lead to different keys.
+     */
+    private static void assertSymmetricMovesEquivalent(Game game) {
+
+        MoveList moves = game.getValidMoves();
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+
+            Game original = game.clone();
+            original.executeMove(move);
+
+            for (int j = 0; j < moves.size(); j++) {
+                int otherMove = moves.get(j);
+                if (!isImage(game, move, otherMove)) {
+                    Game other = game.clone();
+                    other.executeMove(otherMove);
+                    assertNotEquals(original.canonicalHash(), other.canonicalHash(),
+                            PackedMove.toString(move) + " and " + PackedMove.toString(otherMove));
+                }
+            }
+
+            for (Symmetry symmetry : game.getStabilizingSymmetries()) {
+                int image = mapMove(symmetry, move);
+                assertTrue(moves.contains(image), symmetry + " of " + PackedMove.toString(move));
+
+                Game mapped = game.clone();
+                mapped.executeMove(image);
+                assertEquals(original.canonicalHash(), mapped.canonicalHash(),
+                        symmetry + " of " + PackedMove.toString(move));
+            }
+        }
+    }
+
+    /**
+     * Check that of every move and its images, exactly one is kept.
+     */
+    private static void assertOneMovePerClass(Game game) {
+
+        MoveList moves = game.getValidMoves();
+        MoveList kept = GameEvaluator.removeSymmetricMoves(game, moves);
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+
+            int keptImages = 0;
+            for (int j = 0; j < kept.size(); j++) {
+                if (isImage(game, move, kept.get(j))) {
+                    keptImages++;
+                }
+            }
+            assertEquals(1, keptImages, PackedMove.toString(move));
+        }
+    }
+
+    private static boolean isImage(Game game, int move, int other) {
+        if (other == move) {
+            return true;
+        }
+        for (Symmetry symmetry : game.getStabilizingSymmetries()) {
+            if (mapMove(symmetry, move) == other) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The move on the image of the cell, with the same type and payload.
+     */
+    private static int mapMove(Symmetry symmetry, int move) {
+        return PackedMove.create(symmetry.mapCell(PackedMove.getCell(move)), 0, 0)
+                | (move & 0xFF);
+    }
+}
@@ -0,0 +1,70 @@
+package game;
+
+import move.PackedMove;
+import org.junit.jupiter.api.Test;
+import util.PlayoutHelper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Plays random games on every map and checks that executing a move and taking it back with
+ * {@link Game#undoMove()} leads to exactly the same states as executing the move on a clone.
+ */
+public class UndoMoveTest {
+
+    @Test
+    public void undoMatchesCloneOnRandomPlayouts() throws Exception {
+
+        for (String map : PlayoutHelper.listMaps("maps")) {
+            Game game = GameFactory.createFromFile(map);
+            Game initial = game.clone();
+
+            int moves = PlayoutHelper.playout(map, game, 0, UndoMoveTest::assertUndoRestores);
+
+            // Take back the whole game
+            for (int i = 0; i < moves; i++) {
+                game.undoMove();
+            }
+            assertSameState(map + " after undoing all moves", initial, game);
+        }
+    }
+
+    private static void assertUndoRestores(String message, Game game, int move) {
+
+        Game before = game.clone();
+        Game expected = game.clone();
+        expected.executeMove(move);
+
+        game.executeMove(move);
+        assertSameState(message + ", " + PackedMove.toString(move), expected, game);
+
+        game.undoMove();
+        assertSameState(message + ", undoing " + PackedMove.toString(move), before, game);
+    }
+
+    private static void assertSameState(String message, Game expected, Game actual) {
+
+        assertEquals(expected.hash(), actual.hash(), message);
+        assertEquals(expected.canonicalHash(), actual.canonicalHash(), message);
+        assertEquals(expected.getPhase(), actual.getPhase(), message);
+        assertEquals(expected.getCurrentPlayerNumber(), actual.getCurrentPlayerNumber(), message);
+        assertEquals(expected.getMoveCounter(), actual.getMoveCounter(), message);
+        assertEquals(expected.getTotalTilesOccupied(), actual.getTotalTilesOccupied(), message);
+        assertEquals(expected.getValidMoves(), actual.getValidMoves(), message);
+
+        for (int player = 1; player <= expected.constants.initialPlayers(); player++) {
+            assertEquals(expected.getOverwriteStones(player), actual.getOverwriteStones(player),
+                    message);
+            assertEquals(expected.getBombs(player), actual.getBombs(player), message);
+            assertEquals(expected.isDisqualified(player), actual.isDisqualified(player), message);
+        }
+
+        for (int cell = 0; cell < expected.getWidth() * expected.getHeight(); cell++) {
+            assertEquals(expected.getTile(cell), actual.getTile(cell), message);
+            for (int direction = 0; direction < 8; direction++) {
+                assertEquals(expected.getNeighbour(cell, direction),
+                        actual.getNeighbour(cell, direction), message);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package util;
+
+import game.Game;
+import game.GamePhase;
+import move.MoveList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Helper class which plays random games on the maps for the tests that check every position of
+ * a game. The moves are drawn by a random generator seeded with the path of the map, so a failing
+ * game is played the same way again.
+ */
+public class PlayoutHelper {
+
+    /**
+     * A check of a position of a random game.
+     */
+    @FunctionalInterface
+    public interface PositionCheck {
+
+        /**
+         * Check the position before the move is executed. The game may be changed, as long as it
+         * is left as it was.
+         * @param message Names the map and the number of moves played, for failed assertions.
+         * @param move    The move that is executed next.
+         */
+        void check(String message, Game game, int move) throws Exception;
+    }
+
+    /**
+     * @return The paths of all maps in the directories and their subdirectories, sorted by
+     * directory and path.
+     */
+    public static List<String> listMaps(String... directories) throws IOException {
+
+        Logger.defaultPriority = 3;
+
+        List<String> maps = new ArrayList<>();
+        for (String directory : directories) {
+            try (Stream<Path> files = Files.walk(Paths.get(directory))) {
+                files.map(Path::toString).filter(path -> path.endsWith(".map")).sorted()
+                        .forEach(maps::add);
+            }
+        }
+        return maps;
+    }
+
+    /**
+     * Play a random game until it ends, with undo enabled, and check every position before its
+     * move is executed.
+     * @param map           The path of the map, which seeds the random generator.
+     * @param takeBackOneIn After one in that many moves on average, up to three moves are taken
+     *                      back, or never if 0.
+     * @return The number of moves played and not taken back.
+     */
+    public static int playout(String map, Game game, int takeBackOneIn, PositionCheck check)
+            throws Exception {
+
+        Random random = new Random(map.hashCode());
+        game.enableUndo();
+
+        int moves = 0;
+
+        while (game.getPhase() != GamePhase.END) {
+
+            MoveList validMoves = game.getValidMoves();
+            int move = validMoves.get(random.nextInt(validMoves.size()));
+
+            check.check(map + " after " + game.getMoveCounter() + " moves", game, move);
+
+            game.executeMove(move);
+            moves++;
+
+            // Taking back moves changes the same cells again
+            if (takeBackOneIn > 0 && random.nextInt(takeBackOneIn) == 0) {
+                int undos = 1 + random.nextInt(Math.min(moves, 3));
+                for (int i = 0; i < undos; i++) {
+                    game.undoMove();
+                    moves--;
+                }
+            }
+        }
+
+        return moves;
+    }
+}
@@ -0,0 +1,154 @@
+package board;
+
+/**
+ * Static helpers for bitsets stored as long[]. Bit i of the set lives in word i / 64, at position
+ * i % 64. Cells of a board are numbered row by row, so cell index y * width + x maps to one bit.
+ * <p>
+ * Several bitsets of the same size can be stored one after another in a single array. The range
+ * variants of the methods then work on one of them.
+ */
+public final class Bitboard {
+
+    private Bitboard() {
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Creation
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * @return A new, empty bitset large enough to hold the given number of bits.
+     */
+    public static long[] create(int bits) {
+        return new long[(bits + 63) >>> 6];
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Single bits
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public static boolean get(long[] bitboard, int index) {
+        return (bitboard[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void set(long[] bitboard, int index) {
+        bitboard[index >>> 6] |= 1L << index;
+    }
+
+    public static void clear(long[] bitboard, int index) {
+        bitboard[index >>> 6] &= ~(1L << index);
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Whole sets
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * @return The number of bits set.
+     */
+    public static int count(long[] bitboard) {
+        return count(bitboard, 0, bitboard.length);
+    }
+
+    /**
+     * @return The number of bits set in the words from fromWord (inclusive) to toWord (exclusive).
+     */
+    public static int count(long[] bitboard, int fromWord, int toWord) {
+        int result = 0;
+        for (int i = fromWord; i < toWord; i++) {
+            result += Long.bitCount(bitboard[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return The index of the first set bit at or after fromIndex, or -1 if there is none.
+     */
+    public static int nextSetBit(long[] bitboard, int fromIndex) {
+        return nextSetBit(bitboard, fromIndex, bitboard.length << 6);
+    }
+
+    /**
+     * @param toIndex Exclusive end of the range to search, must be a multiple of 64.
+     * @return The index of the first set bit at or after fromIndex and before toIndex, or -1 if
+     * there is none.
+     */
+    public static int nextSetBit(long[] bitboard, int fromIndex, int toIndex) {
+        int wordIndex = fromIndex >>> 6;
+        int endWord = toIndex >>> 6;
+        if (wordIndex >= endWord) {
+            return -1;
+        }
+
+        long word = bitboard[wordIndex] & (-1L << fromIndex);
+
+        while (true) {
+            if (word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == endWord) {
+                return -1;
+            }
+            word = bitboard[wordIndex];
+        }
+    }
+
+    /**
+     * Shift all bits of the source by the given amount towards higher indices, or towards lower
+     * indices if the amount is negative, and store the result in the target. Bits shifted beyond
+     * either end are dropped.
+     * @param target Must have the length of the source and must not be the source.
+     */
+    public static void shift(long[] source, int amount, long[] target) {
+        int length = source.length;
+
+        if (amount >= 0) {
+            int wordShift = amount >>> 6;
+            int bitShift = amount & 63;
+            for (int i = length - 1; i >= 0; i--) {
+                int from = i - wordShift;
+                long word = from >= 0 ? source[from] << bitShift : 0;
+                if (bitShift != 0 && from > 0) {
+                    word |= source[from - 1] >>> (64 - bitShift);
+                }
+                target[i] = word;
+            }
+        }
+        else {
+            int wordShift = -amount >>> 6;
+            int bitShift = -amount & 63;
+            for (int i = 0; i < length; i++) {
+                int from = i + wordShift;
+                long word = from < length ? source[from] >>> bitShift : 0;
+                if (bitShift != 0 && from + 1 < length) {
+                    word |= source[from + 1] << (64 - bitShift);
+                }
+                target[i] = word;
+            }
+        }
+    }
+
+    /**
+     * @return Whether no bit is set.
+     */
+    public static boolean isEmpty(long[] bitboard) {
+        for (long word : bitboard) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,8 +3,8 @@ package board;
 import exceptions.CoordinatesOutOfBoundsException;
 import util.Logger;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * This class only stores information about what is currently on the game board, not the state of
@@ -23,35 +23,81 @@ public class Board implements Cloneable {
     /**
      * The dimensions of the game board. Used for quick access.
      */
-    private final short width;
-    private final short height;
+    private final int width;
+    private final int height;
 
     /**
-     * The game board. Consisting of bytes, where every byte represents two Tiles, one by the first
-     * 4 bits and one by the last 4 bits. We start with the first 4 bits at the top left (0/0), the
-     * next 4 bits are one to the right (0/1) and so on. If we are at the end of a line, the next 4
-     * bits represent the first Tile on the next line. If the number of  Tiles on the board is odd,
-     * the last 4 bits of the last byte may be ignored as they then won't hold any information.
+     * All tiles that exist, indexed by their ordinal. Used for quick access.
      */
-    private byte[] board;
+    private static final Tile[] TILES = Tile.values();
 
     /**
+     * The game board. Consisting of one byte per Tile, holding the Tile's ordinal. We start at the
+     * top left (0/0), the next byte is one to the right (1/0) and so on. If we are at the end of a
+     * line, the next byte represents the first Tile on the next line. This index is called the cell
+     * index of a Tile.
+     */
+    private byte[] tiles;
+
+    /**
+     * For every Tile value (indexed by its ordinal) a bitset, in which the bit of every cell index
+     * that currently holds this value is set. Allows checking a cell against a Tile value without
+     * decoding it and counting Tiles of a value by popcount. See {@link Bitboard}.
+     * <p>
+     * All bitsets are stored one after another in a single array, {@link #words} words each, so
+     * the bit of a cell for a Tile value is at ordinal * words * 64 + cell.
+     */
+    private long[] bitboards;
+
+    /**
+     * The number of words of a single bitset.
+     */
+    private final int words;
+
+    /**
+     * The number of cells holding every Tile value, indexed by ordinal. Kept up-to-date by
+     * {@link #setTile(int, Tile)}, so counting needs no popcount.
+     */
+    private int[] tileCounts;
+
+    /**
+     * The canonical Coordinates of every cell, indexed by cell index. All Coordinates handed out by
+     * the board are taken from here, so two Coordinates of the same cell are always the same
+     * instance. Never changes, so it is shared between all clones.
+     */
+    private final Coordinates[] coordinates;
+
+    /**
+     * For every Tile and direction, where a step from this Tile leads to. Includes transitions.
      * A transition consists of two Transition parts, which are linked together. Transitions can be
      * considered "Portals": If we enter a Transition's part, we exit its counterpart.
+     */
+    private NeighbourTable neighbours;
+
+    /**
+     * Bitset of the frontier: the unoccupied cells next to at least one stone, i.e. a tile of a
+     * player or an expansion stone. Every ray ends on one of them. Whose stones they are does
+     * not matter, so recoloring does not change it. Null if the steps cannot be walked back, see
+     * {@link NeighbourTable#isReversible}.
      * <p>
-     * For the sake of performance, we store each transition twice, once as is and once flipped, so
-     * we can iterate through only the keys of the Map and still meet every Transition part.
-     * <p>
-     * Transition Parts are stored as shorts, which can be interpreted as follows:
-     * <ul>
-     * <li>The first 4 Bits represent the Direction (0=North, 1=Northeast, ...)</li>
-     * <li>The next 6 Bits represent the X Coordinate</li>
-     * <li>The last 6 Bits represent the Y Coordinate</li>
-     * </ul>
-     * A short provides enough space, as: We have 8 directions (less than 2^4=16) and a board's size
-     * will never exceed 50x50 (less than 2^6=64)
+     * Calculated on the first call of {@link #getFrontier()} and kept up-to-date from then on,
+     * until walls change, which changes the steps themselves.
      */
-    private Map<Short, Short> transitions;
+    private long[] frontier;
+    private int frontierCount;
+    private boolean frontierCalculated;
+
+    /**
+     * For every cell, how many of its steps lead onto a stone. Kept together with the
+     * {@link #frontier}.
+     */
+    private byte[] stoneNeighbours;
+
+    /**
+     * All symmetries of the board as loaded, the identity being the first. Never changes, so it is
+     * shared between all clones.
+     */
+    private final List<Symmetry> symmetries;
 
     /*
     |-----------------------------------------------------------------------------------------------
@@ -61,24 +107,31 @@ public class Board implements Cloneable {
     |-----------------------------------------------------------------------------------------------
     */
 
-    public Board(Tile[][] tiles, Map<TransitionPart, TransitionPart> transitions) {
+    public Board(Tile[][] tiles, NeighbourTable neighbours, List<Symmetry> symmetries) {
+
+        this.height = tiles.length;
+        this.width = tiles[0].length;
+
+        this.tiles = new byte[width * height];
 
-        this.height = (short) tiles.length;
-        this.width = (short) tiles[0].length;
+        this.coordinates = new Coordinates[width * height];
 
-        this.board = new byte[(int) Math.ceil((double) (width * height) / 2)];
+        this.words = Bitboard.create(width * height).length;
+        this.bitboards = new long[TILES.length * words];
+        this.tileCounts = new int[TILES.length];
 
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                this.setTile(new Coordinates(x, y), tiles[y][x]);
+                int cell = getCellIndex(x, y);
+                this.coordinates[cell] = new Coordinates(x, y);
+                this.tiles[cell] = (byte) tiles[y][x].ordinal();
+                Bitboard.set(bitboards, getBitIndex(tiles[y][x].ordinal(), cell));
+                this.tileCounts[tiles[y][x].ordinal()]++;
             }
         }
 
-        this.transitions = new HashMap<>();
-
-        for (var transition : transitions.entrySet()) {
-            this.transitions.put(transition.getKey().toShort(), transition.getValue().toShort());
-        }
+        this.neighbours = neighbours;
+        this.symmetries = symmetries;
     }
 
     /*
@@ -95,16 +148,7 @@ public class Board implements Cloneable {
                     "Tried to access coordinates the board doesn't have: " + coordinates);
         }
 
-        int tileNumber = coordinates.y * width + coordinates.x;
-
-        int arrayIndex = (int) Math.floor((double) tileNumber / 2);
-        boolean isFirst4Bits = tileNumber % 2 == 0;
-
-        if (isFirst4Bits) {
-            return Tile.fromByte((byte) (board[arrayIndex] & 0x0F));
-        } else {
-            return Tile.fromByte((byte) ((board[arrayIndex] >> 4) & 0x0F));
-        }
+        return TILES[tiles[coordinates.y * width + coordinates.x]];
     }
 
     public void setTile(Coordinates coordinates, Tile tile) {
@@ -113,20 +157,147 @@ public class Board implements Cloneable {
                     "Tried to access coordinates the board doesn't have: " + coordinates);
         }
 
-        int tileNumber = coordinates.y * width + coordinates.x;
+        setTile(coordinates.y * width + coordinates.x, tile);
+    }
+
+    public Tile getTile(int cell) {
+        return TILES[tiles[cell]];
+    }
+
+    public void setTile(int cell, Tile tile) {
+        int oldOrdinal = tiles[cell];
+        int newOrdinal = tile.ordinal();
+
+        if (oldOrdinal == newOrdinal) {
+            return;
+        }
+
+        Bitboard.clear(bitboards, getBitIndex(oldOrdinal, cell));
+        Bitboard.set(bitboards, getBitIndex(newOrdinal, cell));
+        tiles[cell] = (byte) newOrdinal;
+        tileCounts[oldOrdinal]--;
+        tileCounts[newOrdinal]++;
+
+        // Steps into a wall are not possible, so the neighbours leading here have to be redirected
+        // if a wall is placed or removed (when taking back a bomb move)
+        if (newOrdinal == Tile.WALL.ordinal() || oldOrdinal == Tile.WALL.ordinal()) {
+            neighbours.patch(cell, c -> tiles[c] == Tile.WALL.ordinal());
+            frontierCalculated = false;
+        }
+        else if (frontierCalculated && frontier != null) {
+            updateFrontier(cell, oldOrdinal, newOrdinal);
+        }
+    }
 
-        int arrayIndex = (int) Math.floor((double) tileNumber / 2);
-        boolean isFirst4Bits = tileNumber % 2 == 0;
+    /**
+     * Check if the cell holds the given Tile value.
+     */
+    public boolean isTile(int cell, Tile tile) {
+        return Bitboard.get(bitboards, getBitIndex(tile.ordinal(), cell));
+    }
 
-        if (isFirst4Bits) {
-            board[arrayIndex] = (byte) ((board[arrayIndex] & 0xF0) | (tile.toByte() & 0x0F));
-        } else {
-            board[arrayIndex] = (byte) ((board[arrayIndex] & 0x0F) | ((tile.toByte() << 4) & 0xF0));
+    /**
+     * @return The number of Tiles on the board that hold the given value.
+     */
+    public int getTileCount(Tile tile) {
+        return tileCounts[tile.ordinal()];
+    }
+
+    /**
+     * @return The first cell index at or after fromCell that holds the given Tile value, or -1 if
+     * there is none.
+     */
+    public int nextCell(Tile tile, int fromCell) {
+        int offset = getBitIndex(tile.ordinal(), 0);
+        int result = Bitboard.nextSetBit(bitboards, offset + fromCell, offset + (words << 6));
+        return result < 0 ? -1 : result - offset;
+    }
+
+    /**
+     * @return A copy of the bitset of all cells holding the given Tile value.
+     */
+    public long[] getBitboard(Tile tile) {
+        return Arrays.copyOfRange(bitboards, tile.ordinal() * words, (tile.ordinal() + 1) * words);
+    }
+
+    /**
+     * Add all cells holding the given Tile value to the bitset, without allocating.
+     */
+    public void addBitboard(Tile tile, long[] target) {
+        int offset = tile.ordinal() * words;
+        for (int i = 0; i < words; i++) {
+            target[i] |= bitboards[offset + i];
+        }
+    }
+
+    /**
+     * @return A bitset of the frontier, the unoccupied cells next to a stone of a player or an
+     * expansion stone, or null if some steps cannot be walked back. Must not be modified.
+     * Calculated on the first call, afterwards kept up-to-date with every change of a tile.
+     */
+    public long[] getFrontier() {
+        if (!frontierCalculated) {
+            calculateFrontier();
         }
+        return frontier;
+    }
+
+    /**
+     * @return The number of cells in the {@link #getFrontier() frontier}, 0 if there is none.
+     */
+    public int getFrontierCount() {
+        if (!frontierCalculated) {
+            calculateFrontier();
+        }
+        return frontierCount;
+    }
+
+    private int getBitIndex(int ordinal, int cell) {
+        return (ordinal * words << 6) + cell;
+    }
+
+    /**
+     * Get where a step from the cell in the given direction leads.
+     * @return The encoded entry, see {@link NeighbourTable}, or {@link NeighbourTable#NONE}.
+     */
+    public int getNeighbour(int cell, int direction) {
+        return neighbours.get(cell, direction);
+    }
+
+    /**
+     * Get where the transition of the cell in the given direction leads, whether it is used or not.
+     * @return The encoded entry, see {@link NeighbourTable}, or {@link NeighbourTable#NONE}.
+     */
+    public int getTransition(int cell, int direction) {
+        return neighbours.getTransition(cell, direction);
     }
 
-    public Map<Short, Short> getTransitions() {
-        return transitions;
+    /**
+     * @return A bitset of the cells that have a transition in the given direction, see
+     * {@link NeighbourTable#getTransitionCells(int)}. Must not be modified.
+     */
+    public long[] getTransitionCells(int direction) {
+        return neighbours.getTransitionCells(direction);
+    }
+
+    /**
+     * @return All symmetries of the board as loaded, see {@link Symmetry}. The identity is always
+     * the first.
+     */
+    public List<Symmetry> getSymmetries() {
+        return symmetries;
+    }
+
+    /**
+     * @return Whether the symmetry maps every Tile currently on the board onto an equal Tile.
+     */
+    public boolean isInvariantUnder(Symmetry symmetry) {
+        for (int cell = 0; cell < tiles.length; cell++) {
+            if (tiles[symmetry.mapCell(cell)] != tiles[cell]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public int getHeight() {
@@ -137,6 +308,84 @@ public class Board implements Cloneable {
         return width;
     }
 
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Frontier
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    private void calculateFrontier() {
+        frontierCalculated = true;
+        frontierCount = 0;
+
+        // Cells are found through the steps leading away from the stones
+        if (!neighbours.isReversible(c -> tiles[c] == Tile.WALL.ordinal())) {
+            frontier = null;
+            stoneNeighbours = null;
+            return;
+        }
+
+        stoneNeighbours = new byte[tiles.length];
+        frontier = Bitboard.create(tiles.length);
+
+        for (int cell = 0; cell < tiles.length; cell++) {
+            if (isStone(tiles[cell])) {
+                changeStoneNeighbours(cell, 1);
+            }
+        }
+    }
+
+    /**
+     * Keep the frontier up-to-date after the tile of a cell changed. Walls are not handled, they
+     * change the steps between cells.
+     */
+    private void updateFrontier(int cell, int oldOrdinal, int newOrdinal) {
+        boolean wasStone = isStone(oldOrdinal);
+        if (wasStone != isStone(newOrdinal)) {
+            changeStoneNeighbours(cell, wasStone ? -1 : 1);
+        }
+        updateFrontierBit(cell);
+    }
+
+    /**
+     * Add the delta to the count of every cell with a step onto the given one. Transitions link
+     * both of their ends, so these are exactly the cells a step from the given cell leads to.
+     */
+    private void changeStoneNeighbours(int cell, int delta) {
+        for (int direction = 0; direction < 8; direction++) {
+            int neighbour = neighbours.get(cell, direction);
+            if (neighbour == NeighbourTable.NONE) {
+                continue;
+            }
+            int neighbourCell = NeighbourTable.getCell(neighbour);
+            stoneNeighbours[neighbourCell] += delta;
+            updateFrontierBit(neighbourCell);
+        }
+    }
+
+    private void updateFrontierBit(int cell) {
+        boolean inFrontier = stoneNeighbours[cell] > 0 && TILES[tiles[cell]].isUnoccupied();
+        if (inFrontier != Bitboard.get(frontier, cell)) {
+            if (inFrontier) {
+                Bitboard.set(frontier, cell);
+                frontierCount++;
+            }
+            else {
+                Bitboard.clear(frontier, cell);
+                frontierCount--;
+            }
+        }
+    }
+
+    /**
+     * @return Whether the Tile with the given ordinal is a stone of a player or an expansion stone.
+     */
+    private static boolean isStone(int ordinal) {
+        return TILES[ordinal].isPlayer() || ordinal == Tile.EXPANSION.ordinal();
+    }
+
     /*
     |-----------------------------------------------------------------------------------------------
     |
@@ -149,6 +398,35 @@ public class Board implements Cloneable {
         return position.x >= 0 && position.y >= 0 && position.x < width && position.y < height;
     }
 
+    /**
+     * @return The cell index of the Tile at the given position. See {@link #tiles}.
+     */
+    public int getCellIndex(int x, int y) {
+        return y * width + x;
+    }
+
+    public int getCellIndex(Coordinates position) {
+        return getCellIndex(position.x, position.y);
+    }
+
+    /**
+     * @return The canonical Coordinates of the cell.
+     */
+    public Coordinates getCoordinates(int cell) {
+        return coordinates[cell];
+    }
+
+    /**
+     * @return The canonical Coordinates of the position.
+     */
+    public Coordinates getCoordinates(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new CoordinatesOutOfBoundsException(
+                    "Tried to access coordinates the board doesn't have: (" + x + "/" + y + ")");
+        }
+        return coordinates[getCellIndex(x, y)];
+    }
+
     /*
     |-----------------------------------------------------------------------------------------------
     |
@@ -162,6 +440,13 @@ public class Board implements Cloneable {
     }
 
     public String toString() {
+        return toString(TILES);
+    }
+
+    /**
+     * @param mapping For every Tile (indexed by ordinal) the Tile to draw instead.
+     */
+    public String toString(Tile[] mapping) {
         StringBuilder result = new StringBuilder(Logger.ANSI_RESET + "Y\\X ");
 
         // Draw x coordinates
@@ -178,7 +463,7 @@ public class Board implements Cloneable {
 
             // Draw tiles
             for (int x = 0; x < width; x++) {
-                result.append(getTile(new Coordinates(x, y)).toString(true));
+                result.append(mapping[tiles[getCellIndex(x, y)]].toString(true));
             }
 
             result.append(Logger.ANSI_RESET).append("\n");
@@ -191,7 +476,14 @@ public class Board implements Cloneable {
     public Board clone() {
         try {
             Board clone = (Board) super.clone();
-            clone.board = this.board.clone();
+            clone.tiles = this.tiles.clone();
+            clone.bitboards = this.bitboards.clone();
+            clone.tileCounts = this.tileCounts.clone();
+            clone.neighbours = this.neighbours.clone();
+            if (frontier != null) {
+                clone.stoneNeighbours = this.stoneNeighbours.clone();
+                clone.frontier = this.frontier.clone();
+            }
             return clone;
         }
         catch (CloneNotSupportedException e) {
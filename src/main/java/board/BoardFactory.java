@@ -2,6 +2,8 @@ package board;
 
 import util.Logger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -39,10 +41,17 @@ public class BoardFactory {
 
         // Converting to concrete data structures
         var tiles = arrayToTiles(rawTiles);
-        var transitions = arrayToTransitions(rawTransitions);
+        var transitions = arrayToTransitions(rawTransitions, height, width);
+
+        // Precomputing where every step on the board leads
+        var neighbours = NeighbourTable.create(tiles, transitions);
+
+        // Detecting rotations and reflections that map the board onto itself
+        var symmetries = findSymmetries(tiles, neighbours);
+        logger.debug("Symmetries: " + symmetries);
 
         // Creating board
-        return new Board(tiles, transitions);
+        return new Board(tiles, neighbours, symmetries);
     }
 
     /*
@@ -123,7 +132,8 @@ public class BoardFactory {
         return result;
     }
 
-    private static Map<TransitionPart, TransitionPart> arrayToTransitions(int[][] array) {
+    private static Map<TransitionPart, TransitionPart> arrayToTransitions(int[][] array,
+                                                                          int height, int width) {
 
         // Create buffer
         Map<TransitionPart, TransitionPart> result = new HashMap<>();
@@ -143,6 +153,12 @@ public class BoardFactory {
             Direction d2Out = Direction.fromValue(transition[5]);
             Direction d2In = Direction.fromValue((d2Out.getValue() + 4) % 8);
 
+            if (!liesInBoard(x1, y1, height, width) || !liesInBoard(x2, y2, height, width)) {
+                logger.warn("Ignoring transition leading out of the board: " + coordinates1 +
+                        " <-> " + coordinates2);
+                continue;
+            }
+
             // Transitions must be registered in both ways
 
             result.put(new TransitionPart(coordinates1, d1Out),
@@ -155,4 +171,133 @@ public class BoardFactory {
         return result;
     }
 
+    private static boolean liesInBoard(int x, int y, int height, int width) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Symmetries
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Find all rotations and reflections that map the board onto itself. Every Tile has to be
+     * mapped onto an equal Tile, except for player tiles, which may be mapped onto the tiles of
+     * another player as long as this renumbering of the players is consistent. Every transition
+     * has to be mapped onto a transition.
+     * @return The symmetries found, the identity being the first.
+     */
+    private static List<Symmetry> findSymmetries(Tile[][] tiles, NeighbourTable neighbours) {
+
+        int height = tiles.length;
+        int width = tiles[0].length;
+
+        List<Symmetry> result = new ArrayList<>();
+
+        for (Symmetry candidate : Symmetry.createCandidates(width, height)) {
+
+            int[] players = findPlayerRenumbering(tiles, candidate);
+
+            if (players != null && mapsTransitions(neighbours, candidate, width * height)) {
+                result.add(candidate.withPlayers(players));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return For every player index the index it is mapped on, or null if the symmetry does not
+     * map the tiles onto themselves.
+     */
+    private static int[] findPlayerRenumbering(Tile[][] tiles, Symmetry symmetry) {
+
+        int width = tiles[0].length;
+
+        int[] players = new int[8];
+        boolean[] isImage = new boolean[8];
+        Arrays.fill(players, -1);
+
+        for (int cell = 0; cell < tiles.length * width; cell++) {
+
+            int image = symmetry.mapCell(cell);
+            Tile tile = tiles[cell / width][cell % width];
+            Tile imageTile = tiles[image / width][image % width];
+
+            if (!tile.isPlayer()) {
+                if (tile != imageTile) {
+                    return null;
+                }
+                continue;
+            }
+
+            if (!imageTile.isPlayer()) {
+                return null;
+            }
+
+            int player = tile.toPlayerIndex();
+            int imagePlayer = imageTile.toPlayerIndex();
+
+            if (players[player] == -1 && !isImage[imagePlayer]) {
+                players[player] = imagePlayer;
+                isImage[imagePlayer] = true;
+            } else if (players[player] != imagePlayer) {
+                return null;
+            }
+        }
+
+        // Players without any tiles can be renumbered freely, prefer keeping their numbers
+        for (int player = 0; player < players.length; player++) {
+            if (players[player] == -1 && !isImage[player]) {
+                players[player] = player;
+                isImage[player] = true;
+            }
+        }
+        int nextImage = 0;
+        for (int player = 0; player < players.length; player++) {
+            if (players[player] == -1) {
+                while (isImage[nextImage]) {
+                    nextImage++;
+                }
+                players[player] = nextImage;
+                isImage[nextImage] = true;
+            }
+        }
+
+        return players;
+    }
+
+    private static boolean mapsTransitions(NeighbourTable neighbours, Symmetry symmetry,
+                                           int cells) {
+
+        for (int cell = 0; cell < cells; cell++) {
+            for (int direction = 0; direction < 8; direction++) {
+
+                int transition = neighbours.getTransition(cell, direction);
+                int imageTransition = neighbours.getTransition(symmetry.mapCell(cell),
+                        symmetry.mapDirection(direction));
+
+                if (transition == NeighbourTable.NONE) {
+                    if (imageTransition != NeighbourTable.NONE) {
+                        return false;
+                    }
+                    continue;
+                }
+
+                int expected = NeighbourTable.encode(
+                        symmetry.mapCell(NeighbourTable.getCell(transition)),
+                        symmetry.mapDirection(NeighbourTable.getDirection(transition)));
+
+                if (imageTransition != expected) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
 }
@@ -7,6 +7,9 @@ package board;
  *     <li>Coordinates start at 0</li>
  *     <li>(0/0) is on the top left</li>
  * </ul>
+ * Coordinates of a board's cells should be obtained from the board (or game) via getCoordinates.
+ * These are canonical: there is only one instance per cell, so they can be compared by identity
+ * and no new objects are created while searching.
  */
 public class Coordinates {
 
@@ -18,8 +21,8 @@ public class Coordinates {
     |-----------------------------------------------------------------------------------------------
     */
 
-    public final byte x;
-    public final byte y;
+    public final int x;
+    public final int y;
 
     /*
     |-----------------------------------------------------------------------------------------------
@@ -30,31 +33,18 @@ public class Coordinates {
     */
 
     public Coordinates(int x, int y) {
-        this.x = (byte) x;
-        this.y = (byte) y;
+        this.x = x;
+        this.y = y;
     }
 
     /*
     |-----------------------------------------------------------------------------------------------
     |
-    |   Methods
+    |   Comparing and hashing
     |
     |-----------------------------------------------------------------------------------------------
     */
 
-    public Coordinates inDirection(Direction direction) {
-        return switch (direction) {
-            case NORTH -> new Coordinates(x, y - 1);
-            case NORTHEAST -> new Coordinates(x + 1, y - 1);
-            case EAST -> new Coordinates(x + 1, y);
-            case SOUTHEAST -> new Coordinates(x + 1, y + 1);
-            case SOUTH -> new Coordinates(x, y + 1);
-            case SOUTHWEST -> new Coordinates(x - 1, y + 1);
-            case WEST -> new Coordinates(x - 1, y);
-            case NORTHWEST -> new Coordinates(x - 1, y - 1);
-        };
-    }
-
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -69,7 +59,8 @@ public class Coordinates {
 
     @Override
     public int hashCode() {
-        return 100 * x + y;
+        // Unique for boards up to 1021 rows, and spreads well over the buckets of a hash set
+        return 1021 * x + y;
     }
 
     /*
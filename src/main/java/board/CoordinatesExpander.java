@@ -1,56 +1,186 @@
 package board;
 
 import game.Game;
+import util.IntList;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
+/**
+ * Finds all cells within a number of steps from a set of start cells, e.g. the cells a bomb blast
+ * reaches. Walks the steps of the {@link NeighbourTable} breadth-first, so every cell is reached
+ * on a shortest way and its distance is known.
+ * <p>
+ * Holds scratch space for one board size: the queue of reached cells and, for every cell, the
+ * expansion it was last reached in. Starting a new expansion just moves on to the next number, so
+ * nothing has to be cleared. An instance must therefore not be used by several threads, see
+ * {@link #get(Game)} for one per thread.
+ */
 public class CoordinatesExpander {
 
-    public static Set<Coordinates> expandCoordinates(Game game, Set<Coordinates> coordinates,
-                                                     int radius) {
+    /**
+     * One expander per thread, as it holds scratch space.
+     */
+    private static final ThreadLocal<CoordinatesExpander> EXPANDERS = new ThreadLocal<>();
+
+    /**
+     * The cells reached by the last expansion, in the order they were reached. Doubles as the
+     * queue of the search, so the cells are ordered by distance.
+     */
+    private final IntList reached;
+
+    /**
+     * For every cell the expansion it was last reached in, and its distance then.
+     */
+    private final int[] stamps;
+    private final int[] distances;
+
+    private int expansion;
+
+    public CoordinatesExpander(int cells) {
+        reached = new IntList(cells);
+        stamps = new int[cells];
+        distances = new int[cells];
+    }
+
+    /**
+     * @return The expander of the current thread, sized for the board of the game.
+     */
+    public static CoordinatesExpander get(Game game) {
+        int cells = game.getWidth() * game.getHeight();
+        CoordinatesExpander expander = EXPANDERS.get();
+        if (expander == null || expander.stamps.length != cells) {
+            expander = new CoordinatesExpander(cells);
+            EXPANDERS.set(expander);
+        }
+        return expander;
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Expanding
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Find all cells at most radius steps away from the start cell.
+     * @return The cells reached, including the start cell, ordered by distance. Reused by the next
+     * expansion, so it must not be modified or kept.
+     */
+    public IntList expand(Game game, int start, int radius) {
+        startExpansion();
+        reach(start, 0);
+        return search(game, radius);
+    }
 
-        // TODO: Recursion is slow! Also, make it only expand the Coordinates that were expanded
-        //  the last time!
+    /**
+     * Find all cells at most radius steps away from the nearest of the start cells.
+     * @param radius Use {@link Integer#MAX_VALUE} to find all cells that can be reached at all.
+     * @return The cells reached, including the start cells, ordered by distance. Reused by the
+     * next expansion, so it must not be modified or kept.
+     */
+    public IntList expand(Game game, IntList starts, int radius) {
+        startExpansion();
+        for (int i = 0; i < starts.size(); i++) {
+            if (!isReached(starts.get(i))) {
+                reach(starts.get(i), 0);
+            }
+        }
+        return search(game, radius);
+    }
 
-        if (radius == 0) {
-            return coordinates;
+    /**
+     * @return The number of steps from the nearest start cell to the cell in the last expansion,
+     * or -1 if the cell was not reached.
+     */
+    public int getDistance(int cell) {
+        return isReached(cell) ? distances[cell] : -1;
+    }
+
+    /**
+     * @return A new array holding the distance of every cell in the last expansion, see
+     * {@link #getDistance(int)}.
+     */
+    public int[] getDistances() {
+        int[] result = new int[stamps.length];
+        Arrays.fill(result, -1);
+        for (int i = 0; i < reached.size(); i++) {
+            int cell = reached.get(i);
+            result[cell] = distances[cell];
         }
+        return result;
+    }
 
-        Set<Coordinates> result = new HashSet<>(coordinates);
+    /**
+     * Find all coordinates at most radius steps away from the nearest of the given ones.
+     * @return A new set, including the given coordinates.
+     */
+    public static Set<Coordinates> expandCoordinates(Game game, Set<Coordinates> coordinates,
+                                                     int radius) {
 
-        for (int i = 0; i < radius; i++) {
+        IntList starts = new IntList(coordinates.size());
+        for (Coordinates c : coordinates) {
+            starts.add(game.getCellIndex(c));
+        }
 
-            Set<Coordinates> expandedCoordinates = new HashSet<>();
+        IntList cells = get(game).expand(game, starts, radius);
 
-            for (Coordinates c : coordinates) {
+        Set<Coordinates> result = new HashSet<>();
+        for (int i = 0; i < cells.size(); i++) {
+            result.add(game.getCoordinates(cells.get(i)));
+        }
+        return result;
+    }
 
-                // Expand in every direction
-                for (Direction direction : Direction.values()) {
-                    TileReader tileReader = new TileReader(game, c, direction);
+    private IntList search(Game game, int radius) {
 
-                    // This Direction has a dead end
-                    if (!tileReader.hasNext()) {
-                        continue;
-                    }
+        for (int i = 0; i < reached.size(); i++) {
+            int cell = reached.get(i);
+            int distance = distances[cell];
+            if (distance >= radius) {
+                // All cells after this one are at least as far away
+                break;
+            }
 
-                    tileReader.next();
+            // Expand in every direction
+            for (int direction = 0; direction < 8; direction++) {
+                int neighbour = game.getNeighbour(cell, direction);
 
-                    // The expanded Tile is already present in the result
-                    if (result.contains(tileReader.getCoordinates())) {
-                        continue;
-                    }
+                // This direction has a dead end
+                if (neighbour == NeighbourTable.NONE) {
+                    continue;
+                }
 
-                    expandedCoordinates.add(tileReader.getCoordinates());
+                int neighbourCell = NeighbourTable.getCell(neighbour);
+                if (!isReached(neighbourCell)) {
+                    reach(neighbourCell, distance + 1);
                 }
             }
+        }
 
-            result.addAll(expandedCoordinates);
-            coordinates = new HashSet<>(expandedCoordinates);
+        return reached;
+    }
 
+    private void startExpansion() {
+        reached.clear();
+        expansion++;
+        if (expansion == 0) {
+            // After an overflow, old stamps could match again
+            Arrays.fill(stamps, 0);
+            expansion = 1;
         }
+    }
 
-        return result;
+    private boolean isReached(int cell) {
+        return stamps[cell] == expansion;
     }
 
+    private void reach(int cell, int distance) {
+        stamps[cell] = expansion;
+        distances[cell] = distance;
+        reached.add(cell);
+    }
 }
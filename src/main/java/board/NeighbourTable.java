@@ -0,0 +1,324 @@
+package board;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Stores for every cell of the board and every direction where a step leads, so that walking
+ * along a ray is a single array lookup per step.
+ * <p>
+ * The entry for a cell and a direction lies at index cell * 8 + direction. It holds the cell
+ * index of the successor shifted left by 3, combined with the direction the walk continues in
+ * after the step (which only differs from the original direction after passing a transition). If
+ * there is no successor (edge of the board or wall without a usable transition), the entry is
+ * {@link #NONE}. Use {@link #getCell(int)} and {@link #getDirection(int)} to decode an entry.
+ * <p>
+ * The table is sized when the map is loaded. The encoding leaves 28 bits for the cell index, so
+ * boards of any practical size (far beyond 256x256) are supported at the same cost per step.
+ */
+public class NeighbourTable implements Cloneable {
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Constants
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Marks that there is no successor.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Grid offsets of the directions, indexed by {@link Direction#getValue()}.
+     */
+    private static final int[] DELTA_X = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DELTA_Y = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Attributes
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    private final int width;
+    private final int height;
+
+    /**
+     * The successor of every cell in every direction, see class description.
+     */
+    private int[] neighbours;
+
+    /**
+     * The transition counterpart of every cell in every direction, encoded like the neighbours, or
+     * {@link #NONE} if there is no transition. Transitions never change, so this array is shared
+     * between all clones.
+     */
+    private final int[] transitions;
+
+    /**
+     * The indices of {@link #transitions} that hold a transition. Used to quickly find the
+     * transitions that lead into a cell.
+     */
+    private final int[] transitionIndices;
+
+    /**
+     * For every direction a bitset of the cells that have a transition in this direction. Like the
+     * transitions, shared between all clones.
+     */
+    private final long[][] transitionCells;
+
+    /**
+     * Whether the neighbours array is shared with a clone. It then has to be copied before the
+     * first modification.
+     */
+    private boolean shared;
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Constructor and factory
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    private NeighbourTable(int width, int height, int[] transitions) {
+        this.width = width;
+        this.height = height;
+        this.transitions = transitions;
+        this.transitionIndices = collectTransitionIndices(transitions);
+        this.transitionCells = collectTransitionCells(transitions, width * height);
+        this.neighbours = new int[width * height * 8];
+    }
+
+    /**
+     * Calculate the table for the given tiles and transitions.
+     */
+    public static NeighbourTable create(Tile[][] tiles,
+                                        Map<TransitionPart, TransitionPart> transitions) {
+
+        int height = tiles.length;
+        int width = tiles[0].length;
+
+        int[] transitionArray = new int[width * height * 8];
+        Arrays.fill(transitionArray, NONE);
+
+        for (var transition : transitions.entrySet()) {
+            TransitionPart from = transition.getKey();
+            TransitionPart to = transition.getValue();
+            int fromCell = from.coordinates().y * width + from.coordinates().x;
+            int toCell = to.coordinates().y * width + to.coordinates().x;
+            transitionArray[fromCell * 8 + from.direction().getValue()] =
+                    encode(toCell, to.direction().getValue());
+        }
+
+        NeighbourTable table = new NeighbourTable(width, height, transitionArray);
+
+        IntPredicate isWall = cell -> tiles[cell / width][cell % width] == Tile.WALL;
+
+        for (int cell = 0; cell < width * height; cell++) {
+            for (int direction = 0; direction < 8; direction++) {
+                table.neighbours[cell * 8 + direction] =
+                        table.calculateNeighbour(cell, direction, isWall);
+            }
+        }
+
+        return table;
+    }
+
+    private static int[] collectTransitionIndices(int[] transitions) {
+        return IntStream.range(0, transitions.length).filter(i -> transitions[i] != NONE)
+                .toArray();
+    }
+
+    private static long[][] collectTransitionCells(int[] transitions, int cells) {
+        long[][] result = new long[8][];
+        for (int direction = 0; direction < 8; direction++) {
+            result[direction] = Bitboard.create(cells);
+        }
+        for (int index = 0; index < transitions.length; index++) {
+            if (transitions[index] != NONE) {
+                Bitboard.set(result[index % 8], index / 8);
+            }
+        }
+        return result;
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Encoding
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public static int encode(int cell, int direction) {
+        return (cell << 3) | direction;
+    }
+
+    /**
+     * @return The cell index of an entry.
+     */
+    public static int getCell(int entry) {
+        return entry >>> 3;
+    }
+
+    /**
+     * @return The direction value of an entry.
+     */
+    public static int getDirection(int entry) {
+        return entry & 7;
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Methods
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * @return The entry of the successor of the cell in the given direction, or {@link #NONE}.
+     */
+    public int get(int cell, int direction) {
+        return neighbours[cell * 8 + direction];
+    }
+
+    /**
+     * @return The entry of the transition counterpart of the cell in the given direction, or
+     * {@link #NONE} if there is no transition.
+     */
+    public int getTransition(int cell, int direction) {
+        return transitions[cell * 8 + direction];
+    }
+
+    /**
+     * @return A bitset of the cells that have a transition in the given direction. Shared, so it
+     * must not be modified.
+     */
+    public long[] getTransitionCells(int direction) {
+        return transitionCells[direction];
+    }
+
+    /**
+     * @return The offset of a regular step in the given direction along the x-axis.
+     */
+    public static int getDeltaX(int direction) {
+        return DELTA_X[direction];
+    }
+
+    /**
+     * @return The offset of a regular step in the given direction along the y-axis.
+     */
+    public static int getDeltaY(int direction) {
+        return DELTA_Y[direction];
+    }
+
+    /**
+     * Check whether every step can be walked back: if a step from a cell leads to another cell,
+     * the step from there in the opposite of the continued direction leads back, continuing in the
+     * opposite of the original direction. Does not hold if a transition only works one way, e.g.
+     * because one of its ends lies next to a cell that is no wall.
+     * @param isWall Tells whether a cell currently holds a wall. Steps of walls are not checked.
+     */
+    public boolean isReversible(IntPredicate isWall) {
+        for (int index = 0; index < neighbours.length; index++) {
+            int neighbour = neighbours[index];
+            if (neighbour == NONE || isWall.test(index / 8)) {
+                continue;
+            }
+            int back = encode(index / 8, (index % 8 + 4) % 8);
+            if (get(getCell(neighbour), (getDirection(neighbour) + 4) % 8) != back) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Update every entry that may lead into the given cell, which just turned into a wall or
+     * stopped being one. Steps into a new wall are redirected through a transition or blocked,
+     * steps into a former wall lead into it again.
+     * @param isWall Tells whether a cell currently holds a wall, including the changed one.
+     */
+    public void patch(int cell, IntPredicate isWall) {
+
+        int x = cell % width;
+        int y = cell / width;
+
+        // Regular neighbours stepping into the cell
+        for (int direction = 0; direction < 8; direction++) {
+            int sourceX = x - DELTA_X[direction];
+            int sourceY = y - DELTA_Y[direction];
+            if (sourceX < 0 || sourceY < 0 || sourceX >= width || sourceY >= height) {
+                continue;
+            }
+            update((sourceY * width + sourceX) * 8 + direction, isWall);
+        }
+
+        // Transitions leading into the cell
+        for (int index : transitionIndices) {
+            if (getCell(transitions[index]) == cell) {
+                update(index, isWall);
+            }
+        }
+    }
+
+    private void update(int index, IntPredicate isWall) {
+        int value = calculateNeighbour(index / 8, index % 8, isWall);
+        if (neighbours[index] == value) {
+            return;
+        }
+        if (shared) {
+            neighbours = neighbours.clone();
+            shared = false;
+        }
+        neighbours[index] = value;
+    }
+
+    /**
+     * A step goes to the regular neighbour if it lies in the board and is no wall. Otherwise, it
+     * goes through a transition, if there is one and its counterpart is no wall.
+     */
+    private int calculateNeighbour(int cell, int direction, IntPredicate isWall) {
+
+        int neighbourX = cell % width + DELTA_X[direction];
+        int neighbourY = cell / width + DELTA_Y[direction];
+
+        if (neighbourX >= 0 && neighbourY >= 0 && neighbourX < width && neighbourY < height) {
+            int neighbour = neighbourY * width + neighbourX;
+            if (!isWall.test(neighbour)) {
+                return encode(neighbour, direction);
+            }
+        }
+
+        int transition = transitions[cell * 8 + direction];
+
+        if (transition == NONE || isWall.test(getCell(transition))) {
+            return NONE;
+        }
+
+        return transition;
+    }
+
+    @Override
+    public NeighbourTable clone() {
+        try {
+            NeighbourTable clone = (NeighbourTable) super.clone();
+            // Copy on write
+            clone.shared = true;
+            this.shared = true;
+            return clone;
+        }
+        catch (CloneNotSupportedException e) {
+            throw new AssertionError();
+        }
+    }
+}
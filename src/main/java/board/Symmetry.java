@@ -0,0 +1,195 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A symmetry (automorphism) of a board: a rotation or reflection that maps the board onto itself,
+ * including its walls, special tiles and transitions. The players' starting tiles may be mapped
+ * onto the starting tiles of other players, which is described by a renumbering of the players.
+ * <p>
+ * Symmetries are detected by the {@link BoardFactory} when the map is loaded and never change.
+ */
+public final class Symmetry {
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Constants
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Grid offsets of the directions, indexed by {@link Direction#getValue()}.
+     */
+    private static final int[] DELTA_X = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DELTA_Y = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Attributes
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    private final String name;
+
+    /**
+     * The image of every cell, indexed by cell index.
+     */
+    private final int[] cells;
+
+    /**
+     * The image of every direction, indexed by direction value.
+     */
+    private final int[] directions;
+
+    /**
+     * The image of every player, indexed by player index (0-based). Null while only the geometry
+     * is known.
+     */
+    private final int[] players;
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Constructor and factory
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    private Symmetry(String name, int[] cells, int[] directions, int[] players) {
+        this.name = name;
+        this.cells = cells;
+        this.directions = directions;
+        this.players = players;
+    }
+
+    /**
+     * Create all rotations and reflections that fit a board of the given dimensions, regardless
+     * of its content. Rotations by 90 degrees and reflections along the diagonals only fit square
+     * boards. The identity is always the first element.
+     */
+    static List<Symmetry> createCandidates(int width, int height) {
+
+        List<Symmetry> result = new ArrayList<>();
+
+        // Each transformation is given as the image of the unit vectors (1/0) and (0/1)
+        result.add(create("identity", width, height, 1, 0, 0, 1));
+        result.add(create("rotation by 180 degrees", width, height, -1, 0, 0, -1));
+        result.add(create("vertical reflection", width, height, -1, 0, 0, 1));
+        result.add(create("horizontal reflection", width, height, 1, 0, 0, -1));
+
+        if (width == height) {
+            result.add(create("rotation by 90 degrees", width, height, 0, 1, -1, 0));
+            result.add(create("rotation by 270 degrees", width, height, 0, -1, 1, 0));
+            result.add(create("diagonal reflection", width, height, 0, 1, 1, 0));
+            result.add(create("anti-diagonal reflection", width, height, 0, -1, -1, 0));
+        }
+
+        return result;
+    }
+
+    /**
+     * Create the transformation (x/y) -> x * (xx/xy) + y * (yx/yy), shifted back into the board.
+     */
+    private static Symmetry create(String name, int width, int height, int xx, int xy, int yx,
+                                   int yy) {
+
+        // The shift moves the image of the board back onto the board
+        int offsetX = -Math.min(0, xx * (width - 1)) - Math.min(0, yx * (height - 1));
+        int offsetY = -Math.min(0, xy * (width - 1)) - Math.min(0, yy * (height - 1));
+
+        int[] cells = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int imageX = x * xx + y * yx + offsetX;
+                int imageY = x * xy + y * yy + offsetY;
+                cells[y * width + x] = imageY * width + imageX;
+            }
+        }
+
+        int[] directions = new int[8];
+        for (int direction = 0; direction < 8; direction++) {
+            int imageX = DELTA_X[direction] * xx + DELTA_Y[direction] * yx;
+            int imageY = DELTA_X[direction] * xy + DELTA_Y[direction] * yy;
+            for (int image = 0; image < 8; image++) {
+                if (DELTA_X[image] == imageX && DELTA_Y[image] == imageY) {
+                    directions[direction] = image;
+                }
+            }
+        }
+
+        return new Symmetry(name, cells, directions, null);
+    }
+
+    /**
+     * @return A copy of this symmetry with the given renumbering of the players.
+     */
+    Symmetry withPlayers(int[] players) {
+        return new Symmetry(name, cells, directions, players.clone());
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Mapping
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public int mapCell(int cell) {
+        return cells[cell];
+    }
+
+    public int mapDirection(int direction) {
+        return directions[direction];
+    }
+
+    /**
+     * @return The index of the player whose tiles the tiles of the given player are mapped on.
+     */
+    public int mapPlayer(int playerIndex) {
+        return players[playerIndex];
+    }
+
+    /**
+     * @return The Tile a Tile turns into when mapped. Only player tiles change.
+     */
+    public Tile mapTile(Tile tile) {
+        if (!tile.isPlayer()) {
+            return tile;
+        }
+        return Tile.fromInt(players[tile.toPlayerIndex()] + 1);
+    }
+
+    /**
+     * @return Whether every player is mapped on itself. Only then positions are equivalent under
+     * this symmetry, as otherwise the order of the players changes.
+     */
+    public boolean keepsPlayers() {
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(name);
+        if (players != null && !keepsPlayers()) {
+            result.append(" (players");
+            for (int i = 0; i < players.length; i++) {
+                if (players[i] != i) {
+                    result.append(" ").append(i + 1).append("->").append(players[i] + 1);
+                }
+            }
+            result.append(")");
+        }
+        return result.toString();
+    }
+}
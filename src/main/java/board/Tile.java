@@ -42,6 +42,11 @@ public enum Tile {
      */
     public final char character;
 
+    /**
+     * All values, indexed by ordinal. Cached, as values() creates a new array on every call.
+     */
+    private static final Tile[] VALUES = values();
+
     /*
     |-----------------------------------------------------------------------------------------------
     |
@@ -66,7 +71,15 @@ public enum Tile {
         if (i < 0 || i > 8) {
             throw new IllegalArgumentException("fromInt can only handle values between 0 and 8");
         }
-        return Tile.fromChar((char) (i + '0'));
+        // The first nine values are EMPTY and PLAYER1 to PLAYER8, so their ordinal is the number
+        return VALUES[i];
+    }
+
+    /**
+     * Returns the enum with the given ordinal.
+     */
+    public static Tile fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
     }
 
     /*
@@ -103,8 +116,8 @@ public enum Tile {
      * States if the tile is occupied by a player.
      */
     public boolean isPlayer() {
-        return (this == PLAYER1 || this == PLAYER2 || this == PLAYER3 || this == PLAYER4 ||
-                this == PLAYER5 || this == PLAYER6 || this == PLAYER7 || this == PLAYER8);
+        // The players are declared one after another
+        return ordinal() >= PLAYER1.ordinal() && ordinal() <= PLAYER8.ordinal();
     }
 
     /*
@@ -129,46 +142,6 @@ public enum Tile {
         };
     }
 
-    public byte toByte() {
-        return switch (character) {
-            case '1' -> 0x1;
-            case '2' -> 0x2;
-            case '3' -> 0x3;
-            case '4' -> 0x4;
-            case '5' -> 0x5;
-            case '6' -> 0x6;
-            case '7' -> 0x7;
-            case '8' -> 0x8;
-            case '0' -> 0x9;
-            case '-' -> 0xa;
-            case 'b' -> 0xb;
-            case 'c' -> 0xc;
-            case 'i' -> 0xd;
-            case 'x' -> 0xe;
-            default -> throw new IllegalStateException("Unexpected value: " + character);
-        };
-    }
-
-    public static Tile fromByte(byte b) {
-        return switch (b) {
-            case 0x1 -> PLAYER1;
-            case 0x2 -> PLAYER2;
-            case 0x3 -> PLAYER3;
-            case 0x4 -> PLAYER4;
-            case 0x5 -> PLAYER5;
-            case 0x6 -> PLAYER6;
-            case 0x7 -> PLAYER7;
-            case 0x8 -> PLAYER8;
-            case 0x9 -> EMPTY;
-            case 0xa -> WALL;
-            case 0xb -> BONUS;
-            case 0xc -> CHOICE;
-            case 0xd -> INVERSION;
-            case 0xe -> EXPANSION;
-            default -> throw new IllegalStateException("Unexpected value: " + b);
-        };
-    }
-
     /*
     |-----------------------------------------------------------------------------------------------
     |
@@ -18,14 +18,14 @@ public class TileReader {
     private final Game game;
 
     /**
-     * The coordinates of the current tile.
+     * The cell index of the current tile.
      */
-    private Coordinates coordinates;
+    private int cell;
 
     /**
-     * The direction the reader moves when next() is called.
+     * The direction value the reader moves in when next() is called.
      */
-    private Direction direction;
+    private int direction;
 
     /**
      * How often next() was called
@@ -41,10 +41,16 @@ public class TileReader {
     */
 
     public TileReader(Game game, Coordinates coordinates, Direction direction) {
+        this(game);
+        reset(game.getCellIndex(coordinates), direction.getValue());
+    }
+
+    /**
+     * Create a reader which has to be positioned using {@link #reset(int, int)}. A single reader
+     * can be reused for any number of rays, so walking the board does not allocate.
+     */
+    public TileReader(Game game) {
         this.game = game;
-        this.coordinates = coordinates;
-        this.direction = direction;
-        this.tileNumber = 0;
     }
 
     /*
@@ -55,18 +61,34 @@ public class TileReader {
     |-----------------------------------------------------------------------------------------------
     */
 
+    /**
+     * Position the reader on a new cell and direction, as if it was newly created.
+     */
+    public void reset(int cell, int direction) {
+        this.cell = cell;
+        this.direction = direction;
+        this.tileNumber = 0;
+    }
+
     /**
      * Return the tile which the reader currently points at.
      */
     public Tile getTile() {
-        return game.getTile(coordinates);
+        return game.getTile(cell);
     }
 
     /**
      * Return the current coordinates
      */
     public Coordinates getCoordinates() {
-        return coordinates;
+        return game.getCoordinates(cell);
+    }
+
+    /**
+     * Return the cell index of the current tile
+     */
+    public int getCell() {
+        return cell;
     }
 
     /**
@@ -80,16 +102,7 @@ public class TileReader {
      * Return if the reader has a neighbour in the current direction.
      */
     public boolean hasNext() {
-
-        if (game.coordinatesLayInBoard(coordinates.inDirection(direction)) &&
-                game.getTile(coordinates.inDirection(direction)) != Tile.WALL) {
-            // Neighbour
-            return true;
-        } else {
-            // Check transition
-            return getTransitionCounterpart(new TransitionPart(coordinates, direction)) != null;
-        }
-
+        return game.getNeighbour(cell, direction) != NeighbourTable.NONE;
     }
 
     /**
@@ -99,46 +112,16 @@ public class TileReader {
      */
     public void next() {
 
-        Coordinates newCoordinates = coordinates.inDirection(direction);
-
-        if (game.coordinatesLayInBoard(newCoordinates) && game.getTile(newCoordinates) != Tile.WALL) {
-            // Regular neighbour
-            coordinates = newCoordinates;
-        } else {
-            // Could be a transition
-            TransitionPart transitionCounterpart =
-                    getTransitionCounterpart(new TransitionPart(coordinates, direction));
-            if (transitionCounterpart != null) {
-                coordinates = transitionCounterpart.coordinates();
-                direction = transitionCounterpart.direction();
-            } else {
-                throw new RuntimeException(
-                        "Called next() on TileReader, but there is no next Tile");
-            }
-        }
-
-        tileNumber++;
-
-    }
+        int neighbour = game.getNeighbour(cell, direction);
 
-    /**
-     * Gets the transition counterpart if it is not already bombed (occupied by a wall)
-     */
-    private TransitionPart getTransitionCounterpart(TransitionPart transitionPart) {
-        // Is there a transition?
-        // Not using contains because get has better run time
-        if (game.getTransitions().get(transitionPart.toShort()) == null) {
-            return null;
+        if (neighbour == NeighbourTable.NONE) {
+            throw new RuntimeException("Called next() on TileReader, but there is no next Tile");
         }
 
-        TransitionPart transitionCounterpart =
-                TransitionPart.fromShort(game.getTransitions().get(transitionPart.toShort()));
+        cell = NeighbourTable.getCell(neighbour);
+        direction = NeighbourTable.getDirection(neighbour);
 
-        // Is the transition blocked?
-        if (game.getTile(transitionCounterpart.coordinates()).equals(Tile.WALL)) {
-            return null;
-        }
+        tileNumber++;
 
-        return transitionCounterpart;
     }
 }
@@ -4,6 +4,7 @@ import evaluation.BoardInfo;
 import evaluation.GameEvaluator;
 import game.Game;
 import move.Move;
+import move.PackedMove;
 import util.Logger;
 import util.Timer;
 
@@ -59,9 +60,9 @@ public class Client {
 
     /**
      * Search for the best move in the given time window.
-     * @return The best move found in the given time window.
+     * @return The best move found in the given time window, see {@link PackedMove}.
      */
-    public Move search(Timer timer, int depthLimit) {
+    public int search(Timer timer, int depthLimit) {
 
         SearchStats.moveRequests++;
 
@@ -1,25 +1,27 @@
 package clients;
 
+import evaluation.BombSearch;
 import evaluation.GameEvaluator;
 import exceptions.GamePhaseNotValidException;
 import exceptions.NotEnoughTimeException;
 import exceptions.OutOfTimeException;
 import game.Game;
 import game.GamePhase;
-import move.Move;
+import move.MoveList;
+import move.MovePicker;
+import move.PackedMove;
 import util.Logger;
 import util.Timer;
-import util.Tuple;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 
 public class Search {
 
     Logger logger = new Logger(this.getClass().getName());
 
     /**
-     * The game for which to search a new move for.
+     * The game for which to search a new move for. Moves are executed on it and taken back while
+     * searching, so it must not be used elsewhere during the search.
      */
     private final Game game;
 
@@ -38,6 +40,11 @@ public class Search {
      */
     private final SearchTimer timer;
 
+    /**
+     * One move picker per remaining depth, reused for every node on that depth.
+     */
+    private MovePicker[] movePickers = new MovePicker[0];
+
     /**
      * Initialize a new move search.
      * @param game         The game for which to search the best move.
@@ -48,16 +55,19 @@ public class Search {
         this.timer = new SearchTimer(timer);
         this.playerNumber = playerNumber;
         this.evaluator = evaluator;
+
+        game.enableUndo();
+        game.enableMoveIndex();
     }
 
     /**
      * Start the search.
-     * @return A valid move.
+     * @return A valid move, see {@link PackedMove}.
      */
-    public Move search(int depth) {
+    public int search(int depth) {
 
         // Fallback - Random move
-        Move result = game.getValidMoves().iterator().next();
+        int result = game.getValidMoves().get(0);
 
         try {
 
@@ -65,11 +75,11 @@ public class Search {
             if (game.getPhase().equals(GamePhase.BOMB)) {
                 timer.checkFirstBombDepth(game.getValidMoves().size());
                 timer.checkTime();
-                return evaluator.evaluateBombMoves(game, playerNumber, timer).first();
+                return searchBombMoves(depth);
             }
 
             // Fast approximation
-            List<Move> sortedMoves = evaluator.sortMovesQuick(game);
+            MoveList sortedMoves = evaluator.sortMovesQuick(game);
             result = sortedMoves.get(sortedMoves.size() - 1);
 
             SearchStats.incrementDepthsSearched(0);
@@ -79,10 +89,10 @@ public class Search {
             timer.reset();
 
             // Better approximation
-            List<Tuple<Move, Game>> sortedMovesAndGame = evaluator.sortMoves(game, timer);
+            MoveList sortedMovesDeep = evaluator.sortMoves(game, timer);
             // Max-Player -> Reverse
-            Collections.reverse(sortedMovesAndGame);
-            result = sortedMovesAndGame.get(0).first();
+            sortedMovesDeep.reverse();
+            result = sortedMovesDeep.get(0);
 
             SearchStats.incrementDepthsSearched(1);
 
@@ -97,7 +107,7 @@ public class Search {
                 timer.reset();
 
                 // Perform actual search
-                result = findBestMove(game, sortedMovesAndGame, depthLimit);
+                result = findBestMove(sortedMovesDeep, depthLimit);
 
                 SearchStats.incrementDepthsSearched(depthLimit);
 
@@ -121,28 +131,65 @@ public class Search {
 
     }
 
+    /**
+     * Iterative deepening search over the bombs of all players, see {@link BombSearch}. Deepens
+     * until the depth limit, the time or the bombs left run out.
+     * @return The best bomb move found by the deepest completed search.
+     */
+    private int searchBombMoves(int depth) throws OutOfTimeException {
+
+        BombSearch bombSearch = new BombSearch(game, playerNumber, evaluator, timer);
+        int depthLimit = Math.min(depth, bombSearch.getRemainingBombs());
+
+        // A single bomb is rated on its own
+        timer.reset();
+        int result = bombSearch.findBestMove(1);
+        timer.recordFirstBombDepth(game.getValidMoves().size());
+        SearchStats.incrementDepthsSearched(1);
+
+        try {
+            for (int bombDepth = 2; bombDepth <= depthLimit; bombDepth++) {
+                timer.checkAbort(bombDepth - 1);
+                logger.log("Iterative deepening in bomb phase: Depth " + bombDepth);
+
+                timer.reset();
+                result = bombSearch.findBestMove(bombDepth);
+                SearchStats.incrementDepthsSearched(bombDepth);
+            }
+        }
+        catch (OutOfTimeException e) {
+            logger.warn(e.getMessage());
+        }
+        catch (NotEnoughTimeException e) {
+            logger.log(e.getMessage());
+        }
+
+        return result;
+    }
+
     /**
      * Initialize the search, and thus begin the building of a search tree. If enough time, the
      * depth of the tree will be `depthLimit`.
      * @return The best move
      * @throws OutOfTimeException if we ran out of time
      */
-    private Move findBestMove(Game game, List<Tuple<Move, Game>> sortedMovesAndGame, int depth)
-            throws OutOfTimeException {
+    private int findBestMove(MoveList sortedMoves, int depth) throws OutOfTimeException {
 
         int resultScore = Integer.MIN_VALUE;
-        Move resultMove = null;
+        int resultMove = sortedMoves.get(0);
 
         int alpha = Integer.MIN_VALUE;
         int beta = Integer.MAX_VALUE;
 
-        for (var moveAndGame : sortedMovesAndGame) {
+        for (int i = 0; i < sortedMoves.size(); i++) {
+
+            int move = sortedMoves.get(i);
 
-            int score = calculateScore(moveAndGame.second(), depth - 1, alpha, beta, true);
+            int score = calculateScore(move, depth - 1, alpha, beta, true);
 
             if (score > resultScore) {
                 resultScore = score;
-                resultMove = moveAndGame.first();
+                resultMove = move;
             }
 
             // Update alpha for the maximizer
@@ -153,19 +200,33 @@ public class Search {
     }
 
     /**
-     * Recursive function for calculating the score of a game situation.
+     * Execute the move on the game, calculate the score of the resulting game situation and take
+     * the move back. The move is taken back even if we run out of time.
+     */
+    private int calculateScore(int move, int depth, int alpha, int beta, boolean buildTree)
+            throws OutOfTimeException {
+
+        game.executeMove(move);
+        try {
+            return calculateScore(depth, alpha, beta, buildTree);
+        }
+        finally {
+            game.undoMove();
+        }
+    }
+
+    /**
+     * Recursive function for calculating the score of the current game situation.
      * @param depth Depth of tree that is built
      * @param alpha Lowest value that is allowed by Max
      * @param beta  Highest value that is allowed by Min
      * @return Best move with the belonging score
      */
-    private int calculateScore(Game game, int depth, int alpha, int beta, boolean buildTree)
+    private int calculateScore(int depth, int alpha, int beta, boolean buildTree)
             throws OutOfTimeException {
 
         timer.checkTime();
 
-        List<Move> moves = evaluator.sortMovesQuicker(game);
-
         if (depth == 0 || !game.getPhase().equals(GamePhase.BUILD)) {
 
             if (game.getPhase().equals(GamePhase.BOMB)) {
@@ -178,18 +239,20 @@ public class Search {
 
         boolean isMaximizer = game.getCurrentPlayerNumber() == playerNumber;
 
+        // Moves are only sorted as far as they are needed, most nodes cut off early
+        MovePicker moves = getMovePicker(depth);
+        // Maximizer -> Good moves at the beginning
+        evaluator.sortMovesQuicker(game, moves, isMaximizer);
+
         if (isMaximizer) {
 
             int result = Integer.MIN_VALUE;
 
-            // Maximizer -> Reverse so that good moves are at the beginning
-            Collections.reverse(moves);
+            while (moves.hasNext()) {
 
-            for (Move move : moves) {
+                int move = moves.next();
 
-                Game clonedGame = game.clone();
-                clonedGame.executeMove(move);
-                int score = calculateScore(clonedGame, depth - 1, alpha, beta, true);
+                int score = calculateScore(move, depth - 1, alpha, beta, true);
 
                 result = Math.max(result, score);
 
@@ -208,22 +271,21 @@ public class Search {
         } else if (buildTree) {
 
             // Get Phi Move
-            Move phi = moves.get(0);
+            int phi = moves.next();
 
-            Game clonedGame = game.clone();
-            clonedGame.executeMove(phi);
-            int score = calculateScore(clonedGame, depth - 1, alpha, beta, true);
+            int score = calculateScore(phi, depth - 1, alpha, beta, true);
 
             int result = score;
 
             beta = Math.min(beta, result);
 
+            // All moves including the Phi Move
+            moves.rewind();
 
-            for (var move : moves) {
+            while (moves.hasNext()) {
 
-                clonedGame = game.clone();
-                clonedGame.executeMove(move);
-                score = calculateScore(clonedGame, depth - 1, alpha, beta, false);
+                int move = moves.next();
+                score = calculateScore(move, depth - 1, alpha, beta, false);
 
                 result = Math.min(result, score);
 
@@ -240,13 +302,22 @@ public class Search {
             return result;
 
         } else {
-            Move move = moves.get(0);
+            int move = moves.next();
 
-            Game clonedGame = game.clone();
-            clonedGame.executeMove(move);
             timer.incrementNodeCount();
 
-            return calculateScore(clonedGame, depth - 1, alpha, beta, false);
+            return calculateScore(move, depth - 1, alpha, beta, false);
+        }
+    }
+
+    private MovePicker getMovePicker(int depth) {
+        if (depth >= movePickers.length) {
+            int oldLength = movePickers.length;
+            movePickers = Arrays.copyOf(movePickers, depth + 1);
+            for (int i = oldLength; i <= depth; i++) {
+                movePickers[i] = new MovePicker();
+            }
         }
+        return movePickers[depth];
     }
 }
@@ -116,6 +116,14 @@ public class SearchTimer {
         }
     }
 
+    /**
+     * Store the time per move the first bomb depth took since the last reset, which the estimate
+     * of {@link #checkFirstBombDepth} is based on.
+     */
+    void recordFirstBombDepth(int moves) {
+        timePerBombMove = (int) (currentTimer.timePassed() / moves);
+    }
+
     /**
      * Checks if we are over the time limit
      * @throws OutOfTimeException if we ran out of time
@@ -142,4 +150,8 @@ public class SearchTimer {
         currentNodeCount++;
     }
 
+    public static void incrementNodeCount(int nodes) {
+        currentNodeCount += nodes;
+    }
+
 }
@@ -0,0 +1,295 @@
+package evaluation;
+
+import board.Bitboard;
+import board.Tile;
+import game.Game;
+
+/**
+ * Counts how many stones of every player the blast of a bomb hits. Away from walls and
+ * transitions, the blast of radius r around a target covers exactly the square of cells at most r
+ * steps away along both axes (cut off at the edges of the board). The stones in such a square are
+ * counted in constant time from summed-area tables: for every player, the number of its stones in
+ * the rectangle from the corner of the board to each cell.
+ * <p>
+ * A blast only takes another shape if a cell fewer than r steps away is a wall or has a transition,
+ * as only steps from those cells can leave the square or be blocked within it. Such cells are
+ * counted in a summed-area table as well, and the stones hit by the few blasts that reach one are
+ * counted on their footprints, see {@link BlastFootprints}.
+ * <p>
+ * A counter follows the bombs dropped in a search without building its tables again: a copy of it
+ * is told about the bomb before it is dropped, see {@link #removeBlast}. The cells of the blast
+ * turn into walls, and every target whose blast may reach one of them is counted on its footprint
+ * from then on, while the tables are shared with the original counter. Counting does not modify
+ * a counter, so several threads may count at once.
+ */
+final class BlastCounter {
+
+    private final Game game;
+    private final int width;
+    private final int height;
+    private final int radius;
+
+    /**
+     * The summed-area tables, row by row with an extra leading row and column of zeros. The one of
+     * a player starts at its player index times the size of a table. Shared by copies, as they
+     * are never modified once built.
+     */
+    private int[] stoneSums;
+    private int[] irregularSums;
+    private final int tableSize;
+
+    /**
+     * The blasts that do not cover a square, and bitsets of the walls and of the stones of every
+     * player to count them on.
+     */
+    private final BlastFootprints footprints;
+    private final long[] walls;
+    private final long[][] stones;
+
+    /**
+     * A bitset of the targets whose blast may reach a cell that changed since the tables were
+     * built, which are counted on their footprints.
+     */
+    private final long[] changed;
+
+    BlastCounter(Game game, BlastFootprints footprints) {
+        this.game = game;
+        this.footprints = footprints;
+        this.width = game.getWidth();
+        this.height = game.getHeight();
+        this.radius = game.constants.bombRadius();
+
+        int players = game.constants.initialPlayers();
+        tableSize = (width + 1) * (height + 1);
+        stoneSums = new int[players * tableSize];
+        irregularSums = new int[tableSize];
+        changed = Bitboard.create(width * height);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int cell = y * width + x;
+                int index = (y + 1) * (width + 1) + x + 1;
+
+                Tile tile = game.getTile(cell);
+                int playerIndex = tile.toPlayerIndex();
+                if (playerIndex != -1) {
+                    stoneSums[playerIndex * tableSize + index] = 1;
+                }
+                if (tile == Tile.WALL || hasTransition(cell)) {
+                    irregularSums[index] = 1;
+                }
+            }
+        }
+
+        for (int player = 0; player < players; player++) {
+            accumulate(stoneSums, player * tableSize);
+        }
+        accumulate(irregularSums, 0);
+
+        walls = Bitboard.create(width * height);
+        game.coordinatesGroupedByTile.addBitboard(Tile.WALL, walls);
+        stones = new long[players][];
+        for (int player = 0; player < players; player++) {
+            stones[player] = Bitboard.create(width * height);
+            game.coordinatesGroupedByTile.addBitboard(Tile.fromInt(player + 1), stones[player]);
+        }
+    }
+
+    /**
+     * Create a copy of the counter, which can be told about a bomb, see {@link #removeBlast}.
+     */
+    BlastCounter(BlastCounter other) {
+        this.game = other.game;
+        this.footprints = other.footprints;
+        this.width = other.width;
+        this.height = other.height;
+        this.radius = other.radius;
+        this.tableSize = other.tableSize;
+
+        walls = Bitboard.create(width * height);
+        changed = Bitboard.create(width * height);
+        stones = new long[other.stones.length][];
+        for (int player = 0; player < stones.length; player++) {
+            stones[player] = Bitboard.create(width * height);
+        }
+
+        copyFrom(other);
+    }
+
+    /**
+     * Take over the state of another counter of the same game, without allocating anything.
+     */
+    void copyFrom(BlastCounter other) {
+        stoneSums = other.stoneSums;
+        irregularSums = other.irregularSums;
+
+        System.arraycopy(other.walls, 0, walls, 0, walls.length);
+        System.arraycopy(other.changed, 0, changed, 0, changed.length);
+        for (int player = 0; player < stones.length; player++) {
+            System.arraycopy(other.stones[player], 0, stones[player], 0, stones[player].length);
+        }
+    }
+
+    /**
+     * Update the counter for a bomb on the target, which has to be called before the bomb is
+     * dropped on the game. Only the cells of the blast and the targets within the bomb radius of
+     * them are touched.
+     */
+    void removeBlast(int target) {
+
+        long[] footprint = footprints.get(game, target, walls);
+
+        for (int cell = Bitboard.nextSetBit(footprint, 0); cell != -1;
+             cell = Bitboard.nextSetBit(footprint, cell + 1)) {
+
+            Bitboard.set(walls, cell);
+            for (long[] playerStones : stones) {
+                Bitboard.clear(playerStones, cell);
+            }
+
+            // Every blast that may reach the cell lies within the square around it
+            int x = cell % width;
+            int y = cell / width;
+            int left = Math.max(x - radius, 0);
+            int right = Math.min(x + radius, width - 1);
+            for (int row = Math.max(y - radius, 0); row <= Math.min(y + radius, height - 1);
+                 row++) {
+                for (int column = left; column <= right; column++) {
+                    Bitboard.set(changed, row * width + column);
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the stones of every player the blast of a bomb on the target hits.
+     * @param hitsPerPlayer Receives the number of stones of every player, by player index.
+     */
+    void countHits(int target, int[] hitsPerPlayer) {
+
+        if (!coversSquare(target)) {
+            countHitsOnFootprint(target, hitsPerPlayer);
+            return;
+        }
+
+        int x = target % width;
+        int y = target / width;
+
+        for (int player = 0; player < hitsPerPlayer.length; player++) {
+            hitsPerPlayer[player] = sum(stoneSums, player * tableSize, x, y, radius);
+        }
+    }
+
+    /**
+     * Check whether the blast on the target is at least as good for the player as the blast on
+     * the other target: it hits every stone of an opponent the other one hits, and no own stone
+     * the other one does not hit. This is only decided for blasts that cover squares, where the
+     * stones hit by one blast but not by the other lie in rectangles.
+     * @param forPlayer Whether the blast has to be at least as good for the player, or at least
+     *                  as bad, which swaps the roles of the player's stones and the other stones.
+     * @return Whether both blasts cover squares and the first one dominates the other one.
+     */
+    boolean dominates(int target, int other, int playerIndex, boolean forPlayer) {
+
+        if (!coversSquare(target) || !coversSquare(other)) {
+            return false;
+        }
+
+        int x = target % width;
+        int y = target / width;
+        int otherX = other % width;
+        int otherY = other / width;
+
+        // The cells both blasts cover
+        int left = Math.max(Math.max(x, otherX) - radius, 0);
+        int top = Math.max(Math.max(y, otherY) - radius, 0);
+        int right = Math.min(Math.min(x, otherX) + radius + 1, width);
+        int bottom = Math.min(Math.min(y, otherY) + radius + 1, height);
+
+        for (int player = 0; player < stones.length; player++) {
+            int offset = player * tableSize;
+            int shared = left < right && top < bottom
+                    ? sumRectangle(stoneSums, offset, left, top, right, bottom) : 0;
+
+            // Stones of the player are spared if the blast has to be good for it
+            if ((player == playerIndex) == forPlayer) {
+                if (sum(stoneSums, offset, x, y, radius) != shared) {
+                    return false;
+                }
+            }
+            else if (sum(stoneSums, offset, otherX, otherY, radius) != shared) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return Whether the blast on the target covers the square around it, see the class
+     * description.
+     */
+    private boolean coversSquare(int target) {
+        if (Bitboard.get(changed, target)) {
+            return false;
+        }
+        return radius == 0
+                || sum(irregularSums, 0, target % width, target / width, radius - 1) == 0;
+    }
+
+    private void countHitsOnFootprint(int target, int[] hitsPerPlayer) {
+
+        long[] footprint = footprints.get(game, target, walls);
+
+        for (int player = 0; player < hitsPerPlayer.length; player++) {
+            long[] playerStones = stones[player];
+            int hits = 0;
+            for (int i = 0; i < footprint.length; i++) {
+                hits += Long.bitCount(footprint[i] & playerStones[i]);
+            }
+            hitsPerPlayer[player] = hits;
+        }
+    }
+
+    private boolean hasTransition(int cell) {
+        for (int direction = 0; direction < 8; direction++) {
+            if (Bitboard.get(game.getTransitionCells(direction), cell)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turn the values of a table into the sums of all values above and left of them, inclusive.
+     */
+    private void accumulate(int[] table, int offset) {
+        for (int y = 1; y <= height; y++) {
+            for (int x = 1; x <= width; x++) {
+                int index = offset + y * (width + 1) + x;
+                table[index] += table[index - 1] + table[index - width - 1]
+                        - table[index - width - 2];
+            }
+        }
+    }
+
+    /**
+     * @return The sum of the values in the square of the given distance around the cell, cut off
+     * at the edges of the board.
+     */
+    private int sum(int[] table, int offset, int x, int y, int distance) {
+        return sumRectangle(table, offset, Math.max(x - distance, 0), Math.max(y - distance, 0),
+                Math.min(x + distance + 1, width), Math.min(y + distance + 1, height));
+    }
+
+    /**
+     * @return The sum of the values in the rectangle, the right and bottom bounds exclusive.
+     */
+    private int sumRectangle(int[] table, int offset, int left, int top, int right, int bottom) {
+        int rowLength = width + 1;
+        int upper = offset + top * rowLength;
+        int lower = offset + bottom * rowLength;
+        return table[lower + right] - table[upper + right]
+                - table[lower + left] + table[upper + left];
+    }
+}
@@ -0,0 +1,126 @@
+package evaluation;
+
+import board.Bitboard;
+import board.CoordinatesExpander;
+import board.NeighbourTable;
+import board.Tile;
+import game.Game;
+import util.IntList;
+
+/**
+ * Caches the cells the blast of a bomb covers for every target, as the bomb radius never changes
+ * during a game. A footprint is kept as a bitset, so its size only depends on the size of the
+ * board, not on the radius.
+ * <p>
+ * The shape of a blast only depends on which cells are walls. Along with every footprint, the
+ * walls that blocked one of its steps are kept. The footprint stays valid as long as none of its
+ * cells turned into a wall and all of those walls are still there, which is checked with a few
+ * operations on the bitsets whenever it is used. So only the footprints near newly bombed cells
+ * are calculated again, and the cache can be shared by all positions of a game, including those
+ * reached by taking back moves.
+ * <p>
+ * Footprints are replaced as a whole and never modified, so several threads may use an instance.
+ * At worst, they calculate the same footprint twice.
+ */
+final class BlastFootprints {
+
+    private record Footprint(long[] cells, long[] blockingWalls) {
+    }
+
+    private final int width;
+    private final int height;
+    private final int radius;
+
+    /**
+     * The footprint of every target, or null if it was not needed yet.
+     */
+    private final Footprint[] footprints;
+
+    BlastFootprints(Game game) {
+        width = game.getWidth();
+        height = game.getHeight();
+        radius = game.constants.bombRadius();
+        footprints = new Footprint[width * height];
+    }
+
+    /**
+     * @return Whether the footprints can be used for the game.
+     */
+    boolean fits(Game game) {
+        return width == game.getWidth() && height == game.getHeight()
+                && radius == game.constants.bombRadius();
+    }
+
+    /**
+     * @param walls A bitset of the current walls of the game.
+     * @return A bitset of the cells the blast of a bomb on the target covers. Shared, so it must
+     * not be modified.
+     */
+    long[] get(Game game, int target, long[] walls) {
+        Footprint footprint = footprints[target];
+        if (footprint == null || !isValid(footprint, walls)) {
+            footprint = calculate(game, target);
+            footprints[target] = footprint;
+        }
+        return footprint.cells;
+    }
+
+    private static boolean isValid(Footprint footprint, long[] walls) {
+        for (int i = 0; i < walls.length; i++) {
+            if ((footprint.cells[i] & walls[i]) != 0
+                    || (footprint.blockingWalls[i] & ~walls[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Expand the blast and collect the walls its steps ran into: the regular neighbours that are
+     * walls, and where they redirect a step to a transition, the other end of the transition if
+     * it is a wall as well.
+     */
+    private Footprint calculate(Game game, int target) {
+
+        long[] cells = Bitboard.create(width * height);
+        long[] blockingWalls = Bitboard.create(width * height);
+
+        CoordinatesExpander expander = CoordinatesExpander.get(game);
+        IntList reached = expander.expand(game, target, radius);
+
+        for (int i = 0; i < reached.size(); i++) {
+            int cell = reached.get(i);
+            Bitboard.set(cells, cell);
+
+            // Only the steps from cells within the radius were taken
+            if (expander.getDistance(cell) == radius) {
+                continue;
+            }
+
+            int x = cell % width;
+            int y = cell / width;
+
+            for (int direction = 0; direction < 8; direction++) {
+                int neighbourX = x + NeighbourTable.getDeltaX(direction);
+                int neighbourY = y + NeighbourTable.getDeltaY(direction);
+
+                if (neighbourX >= 0 && neighbourY >= 0 && neighbourX < width
+                        && neighbourY < height) {
+                    int neighbour = neighbourY * width + neighbourX;
+                    if (game.getTile(neighbour) != Tile.WALL) {
+                        continue;
+                    }
+                    Bitboard.set(blockingWalls, neighbour);
+                }
+
+                int transition = game.getTransition(cell, direction);
+                if (transition != NeighbourTable.NONE
+                        && game.getTile(NeighbourTable.getCell(transition)) == Tile.WALL) {
+                    Bitboard.set(blockingWalls, NeighbourTable.getCell(transition));
+                }
+            }
+        }
+
+        return new Footprint(cells, blockingWalls);
+    }
+}
@@ -6,14 +6,11 @@ import board.Tile;
 import board.TileReader;
 import game.Game;
 import game.GamePhase;
-import move.Move;
-import move.OverwriteMove;
+import move.MoveList;
+import move.PackedMove;
 import util.Logger;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Set;
 
 public class BoardInfo {
 
@@ -22,7 +19,7 @@ public class BoardInfo {
     /**
      * Number of all tiles that are not walls
      */
-    private final short potentialReachableTiles;
+    private final int potentialReachableTiles;
 
     /**
      * Number of occupied tiles after one example game (heuristic!)
@@ -30,7 +27,7 @@ public class BoardInfo {
 
     private Game simulationGame = null;
 
-    private short reachableTiles;
+    private int reachableTiles;
 
     private boolean wasWholeGameSimulated;
 
@@ -38,9 +35,9 @@ public class BoardInfo {
 
     private boolean wereReachableTilesCalculated;
 
-    private short sizeOfUpdateInterval;
+    private int sizeOfUpdateInterval;
 
-    private short lastUpdate;
+    private int lastUpdate;
 
     private final Boundaries noOverwriteTheMoveBefore = new Boundaries(0, 0);
 
@@ -54,7 +51,7 @@ public class BoardInfo {
         int[][] tileRatings = new int[game.getHeight()][game.getWidth()];
         for (int y = 0; y < game.getHeight(); y++) {
             for (int x = 0; x < game.getWidth(); x++) {
-                if (game.getTile(new Coordinates(x, y)) == Tile.WALL) {
+                if (game.getTile(game.getCoordinates(x, y)) == Tile.WALL) {
                     tileRatings[y][x] = 0;
                     continue;
                 }
@@ -64,18 +61,17 @@ public class BoardInfo {
         return tileRatings;
     }
 
-    private short calculatePotentialReachableTiles(Game initialGame) {
+    private int calculatePotentialReachableTiles(Game initialGame) {
         int allTiles = initialGame.getWidth() * initialGame.getHeight();
-        int allWallTiles =
-                initialGame.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(Tile.WALL).size();
-        return (short) (allTiles - allWallTiles);
+        int allWallTiles = initialGame.coordinatesGroupedByTile.getCount(Tile.WALL);
+        return allTiles - allWallTiles;
     }
 
     /**
      * Simulates a whole game out the number of reachable tiles approximately
      */
     public void updateReachableTiles(Game game, int timelimit) {
-        short newReachableTiles = 0;
+        int newReachableTiles = 0;
         long time = System.currentTimeMillis();
         final int TIMECAP = Math.min(1000, timelimit);
         Game purposeGame;
@@ -92,10 +88,9 @@ public class BoardInfo {
 
         while (System.currentTimeMillis() - time < TIMECAP &&
                 purposeGame.getPhase() == GamePhase.BUILD) {
-            Set<Move> relevantMovesForCurrentPlayer = GameEvaluator.getRelevantMoves(purposeGame);
-            List<Move> ListOfRelevantMoves = new ArrayList<>(relevantMovesForCurrentPlayer);
+            MoveList relevantMovesForCurrentPlayer = GameEvaluator.getRelevantMoves(purposeGame);
 
-            if (ListOfRelevantMoves.get(0) instanceof OverwriteMove) {
+            if (PackedMove.getType(relevantMovesForCurrentPlayer.get(0)) == PackedMove.OVERWRITE) {
                 int playerNumber = purposeGame.getCurrentPlayerNumber();
                 Logger.get().warn("OM detected");
 
@@ -112,13 +107,13 @@ public class BoardInfo {
             }
 
             int randomIndex = (int) (Math.random() * relevantMovesForCurrentPlayer.size());
-            Move randomMove = ListOfRelevantMoves.get(randomIndex);
+            int randomMove = relevantMovesForCurrentPlayer.get(randomIndex);
             purposeGame.executeMove(randomMove);
         }
 
         for (int y = 0; y < game.getHeight(); y++) {
             for (int x = 0; x < game.getWidth(); x++) {
-                if (purposeGame.getTile(new Coordinates(x, y)).isPlayer()) {
+                if (purposeGame.getTile(purposeGame.getCoordinates(x, y)).isPlayer()) {
                     newReachableTiles++;
                 }
             }
@@ -126,7 +121,7 @@ public class BoardInfo {
 
         // Check if simulation went far enough
         if (System.currentTimeMillis() - time >= TIMECAP &&
-                3 * game.totalTilesOccupiedCounter.getTotalTilesOccupied() >=  newReachableTiles){
+                3 * game.getTotalTilesOccupied() >=  newReachableTiles){
             simulationGame = purposeGame;
             Logger.get().log("Reachable tiles are updated...");
             return;
@@ -139,7 +134,7 @@ public class BoardInfo {
 
         // Check if the next to last game was simulated to the end
         if (wasWholeGameSimulated) {
-            reachableTiles = (short) avgOf(reachableTiles, newReachableTiles);
+            reachableTiles = avgOf(reachableTiles, newReachableTiles);
         } else {
             reachableTiles = newReachableTiles;
         }
@@ -154,11 +149,11 @@ public class BoardInfo {
         // Check if the game was simulated to the end
         if (currentTime < TIMECAP) {
             wasWholeGameSimulated = true;
-            sizeOfUpdateInterval = (short) (reachableTiles * 0.3);
+            sizeOfUpdateInterval = (int) (reachableTiles * 0.3);
         }
 
         wereReachableTilesCalculated = true;
-        lastUpdate = game.totalTilesOccupiedCounter.getTotalTilesOccupied();
+        lastUpdate = game.getTotalTilesOccupied();
 
         Logger.get().log("Reachable tiles were updated to " + reachableTiles);
     }
@@ -172,7 +167,7 @@ public class BoardInfo {
         // Check if calculated reachable tiles varied
         if (wasWholeGameSimulated && !noSignificantDifferenceToValueBefore) {
             // Reachable tiles are updated after each update interval
-            if (game.totalTilesOccupiedCounter.getTotalTilesOccupied() - lastUpdate >=
+            if (game.getTotalTilesOccupied() - lastUpdate >=
                     sizeOfUpdateInterval) {
                 return true;
             }
@@ -180,7 +175,7 @@ public class BoardInfo {
 
         // Check if the progress of the current game requires an update of reachable tiles
         if (!wasWholeGameSimulated &&
-                game.totalTilesOccupiedCounter.getTotalTilesOccupied() >= 0.6 * reachableTiles) {
+                game.getTotalTilesOccupied() >= 0.6 * reachableTiles) {
             return true;
         }
         return false;
@@ -213,9 +208,9 @@ public class BoardInfo {
         int tileRating = 1;
         Direction[] halfOfAllDirections = Arrays.copyOfRange(Direction.values(), 0, 4);
         for (Direction direction : halfOfAllDirections) {
-            TileReader tileReader = new TileReader(game, new Coordinates(x, y), direction);
-            TileReader oppositeDirectionTileReader =
-                    new TileReader(game, new Coordinates(x, y), direction.getOppositeDirection());
+            TileReader tileReader = new TileReader(game, game.getCoordinates(x, y), direction);
+            TileReader oppositeDirectionTileReader = new TileReader(game,
+                    game.getCoordinates(x, y), direction.getOppositeDirection());
             if (tileReader.hasNext() && !oppositeDirectionTileReader.hasNext()) {
                 tileRating++;
                 continue;
@@ -239,11 +234,11 @@ public class BoardInfo {
         return tileRatings;
     }
 
-    public short getReachableTiles() {
+    public int getReachableTiles() {
         return reachableTiles;
     }
 
-    public short getPotentialReachableTiles() {
+    public int getPotentialReachableTiles() {
         return potentialReachableTiles;
     }
 
@@ -0,0 +1,180 @@
+package evaluation;
+
+import clients.SearchTimer;
+import exceptions.MoveNotValidException;
+import exceptions.OutOfTimeException;
+import move.MoveList;
+import move.PackedMove;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores bomb moves, see {@link GameEvaluator#rateBombLosses}, on all cores if asked to. The
+ * moves are split in halves until the parts are small enough to score on one thread, which the
+ * common fork/join pool then spreads over its workers. This pays off for the searches of the bomb
+ * phase, see {@link BombSearch}, which score all moves of a position at once. At the leaves of the
+ * search of the build phase, the moves are scored on the calling thread, as many small tasks
+ * would cost more than they save.
+ * <p>
+ * The best move is collected without locks: the score and the index of a move are packed into a
+ * single long, so that the highest one belongs to the highest score and, among equal scores, to
+ * the first move. The result is thus the same as if the moves were scored one after another.
+ * <p>
+ * Running out of time stops all parts at their next move: the first one to notice raises a flag
+ * the others check, and the exception is thrown once all of them returned.
+ */
+final class BombMoveScorer extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * How many moves a part has at most before it is split.
+     */
+    private static final int MOVES_PER_PART = 128;
+
+    /**
+     * The stones a blast hits by player index, one buffer per worker thread.
+     */
+    private static final ThreadLocal<int[]> HITS = new ThreadLocal<>();
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final Scoring scoring;
+    private final int from;
+    private final int to;
+
+    /**
+     * Everything the parts of one scoring share, see {@link #score}.
+     */
+    private record Scoring(GameEvaluator evaluator, BlastCounter blastCounter, MoveList moves,
+                           int[] tilesBefore, int[] tileDifferencesBefore, int ourIndex,
+                           int[] losses, int[] ratings, int[] hits, SearchTimer timer,
+                           AtomicLong best, AtomicBoolean outOfTime) {
+    }
+
+    private BombMoveScorer(Scoring scoring, int from, int to) {
+        this.scoring = scoring;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Score all moves by the stones the players lost before and the stones their blasts hit.
+     * @param losses   The stones every player lost before, by player index.
+     * @param ratings  Receives the score of every move, at the same index as the move, or null.
+     * @param hits     Receives the stones the blast of every move hits, at the cell of the move
+     *                 times the number of players plus the player index, or null.
+     * @param parallel Whether the moves are spread over the common fork/join pool.
+     * @return The index of the first move with the highest score and the score, packed like in
+     * {@link #pack}, or {@link #NONE} if there are no moves.
+     * @throws OutOfTimeException if we ran out of time
+     */
+    static long score(GameEvaluator evaluator, BlastCounter blastCounter, MoveList moves,
+                      int[] tilesBefore, int[] tileDifferencesBefore, int ourIndex, int[] losses,
+                      int[] ratings, int[] hits, boolean parallel, SearchTimer timer)
+            throws OutOfTimeException {
+
+        Scoring scoring = new Scoring(evaluator, blastCounter, moves, tilesBefore,
+                tileDifferencesBefore, ourIndex, losses, ratings, hits, timer,
+                new AtomicLong(NONE), new AtomicBoolean());
+
+        BombMoveScorer scorer = new BombMoveScorer(scoring, 0, moves.size());
+        if (parallel) {
+            scorer.invoke();
+        }
+        else {
+            scorer.scorePart();
+        }
+
+        if (scoring.outOfTime.get()) {
+            throw new OutOfTimeException("Out of time");
+        }
+        return scoring.best.get();
+    }
+
+    /**
+     * @return The index of the move in a result of {@link #score}.
+     */
+    static int getIndex(long packed) {
+        return ~(int) packed;
+    }
+
+    /**
+     * @return The score of the move in a result of {@link #score}.
+     */
+    static int getScore(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    private static long pack(int index, int score) {
+        return ((long) score << 32) | (~index & 0xFFFFFFFFL);
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > MOVES_PER_PART) {
+            int middle = (from + to) >>> 1;
+            invokeAll(new BombMoveScorer(scoring, from, middle),
+                    new BombMoveScorer(scoring, middle, to));
+            return;
+        }
+
+        scorePart();
+    }
+
+    private void scorePart() {
+
+        int players = scoring.tilesBefore.length;
+        int[] hits = getHits(players);
+        long best = NONE;
+
+        for (int i = from; i < to; i++) {
+            if (scoring.outOfTime.get()) {
+                return;
+            }
+
+            int move = scoring.moves.get(i);
+            if (PackedMove.getType(move) != PackedMove.BOMB) {
+                throw new MoveNotValidException("Non bomb move in bomb phase");
+            }
+
+            int cell = PackedMove.getCell(move);
+            scoring.blastCounter.countHits(cell, hits);
+
+            if (scoring.hits != null) {
+                System.arraycopy(hits, 0, scoring.hits, cell * players, players);
+            }
+            for (int player = 0; player < players; player++) {
+                hits[player] += scoring.losses[player];
+            }
+
+            int score = scoring.evaluator.rateBombLosses(scoring.tilesBefore,
+                    scoring.tileDifferencesBefore, scoring.ourIndex, hits);
+            if (scoring.ratings != null) {
+                scoring.ratings[i] = score;
+            }
+            best = Math.max(best, pack(i, score));
+
+            try {
+                scoring.timer.checkTime();
+            }
+            catch (OutOfTimeException e) {
+                scoring.outOfTime.set(true);
+                return;
+            }
+        }
+
+        scoring.best.accumulateAndGet(best, Math::max);
+    }
+
+    private static int[] getHits(int players) {
+        int[] hits = HITS.get();
+        if (hits == null || hits.length != players) {
+            hits = new int[players];
+            HITS.set(hits);
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,286 @@
+package evaluation;
+
+import clients.SearchTimer;
+import exceptions.OutOfTimeException;
+import game.Game;
+import game.GamePhase;
+import move.MoveList;
+import move.MovePicker;
+import move.PackedMove;
+
+import java.util.Arrays;
+
+/**
+ * Searches the bomb phase several bombs deep, so that the order in which the players drop their
+ * bombs is taken into account. Like the search of the build phase, it assumes that all opponents
+ * play against the player (alpha-beta pruning with the opponents as minimizers).
+ * <p>
+ * Positions are rated like single bombs are rated by {@link GameEvaluator#evaluateBombMoves}, by
+ * the stones every player lost since the search started. Those losses are updated by the stones
+ * every blast hits, so neither the positions after the last bomb nor the rating need the board:
+ * the bombs of the last ply are only counted, not dropped. With a depth of 1, the search finds the
+ * same move as {@link GameEvaluator#evaluateBombMoves}.
+ * <p>
+ * On every ply, the targets are rated on all cores, see {@link BombMoveScorer}. Above the last
+ * ply, the dominated targets are dropped, see {@link BombTargetFilter}, and only the bombs with the
+ * best immediate rating for the player dropping them are searched further. The stones the blasts
+ * hit are counted by one {@link BlastCounter} per ply, which is copied from the ply above and
+ * updated by the bomb dropped in between, so its tables are only built at the root.
+ */
+public final class BombSearch {
+
+    /**
+     * How many bombs are searched further on every ply but the last one.
+     */
+    private static final int CANDIDATES = 6;
+
+    private final Game game;
+    private final int playerNumber;
+    private final GameEvaluator evaluator;
+    private final SearchTimer timer;
+    private final BlastFootprints footprints;
+
+    /**
+     * The position the search started from, which the losses are rated against, see
+     * {@link GameEvaluator#rateBombLosses}.
+     */
+    private final int ourIndex;
+    private final int[] tilesBefore;
+    private final int[] tileDifferencesBefore;
+
+    /**
+     * The stones every player lost since the search started, by player index.
+     */
+    private final int[] losses;
+
+    /**
+     * Scratch space per remaining depth, reused for every node on that depth: the moves with their
+     * ratings, the stones the blast on every cell hits, by cell and player index, and the counter
+     * of the position.
+     */
+    private MovePicker[] movePickers = new MovePicker[0];
+    private int[][] ratings = new int[0][];
+    private int[][] hits = new int[0][];
+    private BlastCounter[] blastCounters = new BlastCounter[0];
+
+    /**
+     * Prepare a search for the current position of the game, which has to be in the bomb phase.
+     * Moves are executed on the game and taken back while searching.
+     */
+    public BombSearch(Game game, int playerNumber, GameEvaluator evaluator, SearchTimer timer) {
+        this.game = game;
+        this.playerNumber = playerNumber;
+        this.evaluator = evaluator;
+        this.timer = timer;
+        this.footprints = evaluator.getBlastFootprints(game);
+
+        ourIndex = playerNumber - 1;
+        tilesBefore = evaluator.getTileCounts(game);
+        tileDifferencesBefore = evaluator.getTileDifferences(tilesBefore, ourIndex);
+        losses = new int[tilesBefore.length];
+    }
+
+    /**
+     * @return The number of bombs all players have left, which limits the useful depth.
+     */
+    public int getRemainingBombs() {
+        int bombs = 0;
+        for (int player = 1; player <= tilesBefore.length; player++) {
+            bombs += game.getBombs(player);
+        }
+        return bombs;
+    }
+
+    /**
+     * Search the given number of bombs deep.
+     * @return The best bomb move of the player, see {@link PackedMove}.
+     * @throws OutOfTimeException if we ran out of time
+     */
+    public int findBestMove(int depth) throws OutOfTimeException {
+
+        prepareScratch(depth);
+
+        MovePicker moves = rateMoves(depth);
+
+        if (depth == 1) {
+            return moves.getMoves().get(findBestRated(moves.getMoves(), ratings[depth], true));
+        }
+
+        moves.order(ratings[depth], true);
+
+        int resultMove = -1;
+        int resultScore = Integer.MIN_VALUE;
+        int alpha = Integer.MIN_VALUE;
+
+        for (int i = 0; i < CANDIDATES && moves.hasNext(); i++) {
+
+            int move = moves.next();
+
+            int score = calculateScore(move, depth, alpha, Integer.MAX_VALUE);
+
+            if (score > resultScore) {
+                resultScore = score;
+                resultMove = move;
+            }
+
+            // Update alpha for the maximizer
+            alpha = Math.max(alpha, score);
+        }
+
+        return resultMove;
+    }
+
+    /**
+     * Drop the bomb, rate the resulting position and take the bomb back. The bomb is taken back
+     * even if we run out of time.
+     * @param depth The remaining depth before the bomb.
+     */
+    private int calculateScore(int move, int depth, int alpha, int beta)
+            throws OutOfTimeException {
+
+        int[] moveHits = hits[depth];
+        int offset = PackedMove.getCell(move) * losses.length;
+
+        for (int player = 0; player < losses.length; player++) {
+            losses[player] += moveHits[offset + player];
+        }
+
+        // The ply below counts the blasts of its own bombs
+        if (depth > 1) {
+            blastCounters[depth - 1].copyFrom(blastCounters[depth]);
+            blastCounters[depth - 1].removeBlast(PackedMove.getCell(move));
+        }
+        game.executeMove(move);
+
+        try {
+            return calculateScore(depth - 1, alpha, beta);
+        }
+        finally {
+            game.undoMove();
+            for (int player = 0; player < losses.length; player++) {
+                losses[player] -= moveHits[offset + player];
+            }
+        }
+    }
+
+    /**
+     * Rate the current position by searching the given number of bombs deep.
+     */
+    private int calculateScore(int depth, int alpha, int beta) throws OutOfTimeException {
+
+        timer.checkTime();
+
+        if (depth == 0 || game.getPhase() != GamePhase.BOMB) {
+            SearchTimer.incrementNodeCount();
+            return rateLosses();
+        }
+
+        boolean isMaximizer = game.getCurrentPlayerNumber() == playerNumber;
+        MovePicker moves = rateMoves(depth);
+
+        // The bombs of the last ply are rated without dropping them
+        if (depth == 1) {
+            return ratings[depth][findBestRated(moves.getMoves(), ratings[depth], isMaximizer)];
+        }
+
+        // Maximizer -> Good moves at the beginning
+        moves.order(ratings[depth], isMaximizer);
+
+        int result = isMaximizer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+        for (int i = 0; i < CANDIDATES && moves.hasNext(); i++) {
+
+            int score = calculateScore(moves.next(), depth, alpha, beta);
+
+            if (isMaximizer) {
+                result = Math.max(result, score);
+                alpha = Math.max(alpha, score);
+            }
+            else {
+                result = Math.min(result, score);
+                beta = Math.min(beta, score);
+            }
+
+            if (beta <= alpha) {
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Count the stones the blast of every bomb move of the current player hits, rate the position
+     * after each of them and drop the dominated ones above the last ply. Fills the scratch space
+     * of the depth.
+     * @return The move picker of the depth, holding the moves.
+     */
+    private MovePicker rateMoves(int depth) throws OutOfTimeException {
+
+        BlastCounter blastCounter = blastCounters[depth];
+        boolean isMaximizer = game.getCurrentPlayerNumber() == playerNumber;
+
+        MovePicker picker = movePickers[depth];
+        MoveList moves = picker.getMoves();
+        moves.copyFrom(game.getValidMoves());
+
+        if (ratings[depth].length < moves.size()) {
+            ratings[depth] = new int[Math.max(moves.size(), ratings[depth].length * 2)];
+        }
+
+        BombMoveScorer.score(evaluator, blastCounter, moves, tilesBefore, tileDifferencesBefore,
+                ourIndex, losses, ratings[depth], hits[depth], true, timer);
+        SearchTimer.incrementNodeCount(moves.size());
+
+        // Dominated bombs would only take the places of others among the candidates. On the last
+        // ply, only the best bomb counts, which is never dropped.
+        if (depth > 1) {
+            moves.copyFrom(BombTargetFilter.filter(game, playerNumber, moves, hits[depth],
+                    ratings[depth], blastCounter, isMaximizer));
+        }
+
+        return picker;
+    }
+
+    /**
+     * @return The index of the first of the moves with the highest rating, or the lowest one for
+     * the minimizer.
+     */
+    private static int findBestRated(MoveList moves, int[] moveRatings, boolean isMaximizer) {
+        int best = 0;
+        for (int i = 1; i < moves.size(); i++) {
+            if (isMaximizer ? moveRatings[i] > moveRatings[best]
+                    : moveRatings[i] < moveRatings[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int rateLosses() {
+        return evaluator.rateBombLosses(tilesBefore, tileDifferencesBefore, ourIndex, losses);
+    }
+
+    private void prepareScratch(int depth) {
+        if (movePickers.length <= depth) {
+            int oldLength = movePickers.length;
+            movePickers = Arrays.copyOf(movePickers, depth + 1);
+            ratings = Arrays.copyOf(ratings, depth + 1);
+            hits = Arrays.copyOf(hits, depth + 1);
+            blastCounters = Arrays.copyOf(blastCounters, depth + 1);
+            for (int i = oldLength; i <= depth; i++) {
+                movePickers[i] = new MovePicker();
+                ratings[i] = new int[0];
+                hits[i] = new int[game.getWidth() * game.getHeight() * losses.length];
+            }
+        }
+
+        // Only the counter of the root builds its tables, the others copy it, see calculateScore
+        blastCounters[depth] = new BlastCounter(game, footprints);
+        for (int i = 1; i < depth; i++) {
+            if (blastCounters[i] == null) {
+                blastCounters[i] = new BlastCounter(blastCounters[depth]);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package evaluation;
+
+import board.NeighbourTable;
+import game.Game;
+import move.MoveList;
+import move.PackedMove;
+
+import java.util.Arrays;
+
+/**
+ * Prunes the bomb moves of a ply of the search of the bomb phase, see {@link BombSearch}, once the
+ * stones hit by every blast are counted. The score of a bomb only depends on how many stones of
+ * every player its blast hits, and hitting more stones of opponents or fewer own stones never
+ * scores worse. So:
+ * <ul>
+ *     <li>All targets whose blast hits no stone score the same. Only the first of them is
+ *     kept.</li>
+ *     <li>Targets whose blast hits no stone of an opponent are dominated by those, so they are
+ *     dropped if they come after the first target that hits no stone at all.</li>
+ *     <li>Targets are dropped if the blast on a neighbouring target that comes earlier hits every
+ *     stone of an opponent their blast hits, and no own stone their blast does not hit. This is
+ *     decided by the {@link BlastCounter}, see {@link BlastCounter#dominates}.</li>
+ * </ul>
+ * A dropped target is always dominated by a target that comes earlier and is kept, so that target
+ * scores at least as well and is found first.
+ */
+final class BombTargetFilter {
+
+    private BombTargetFilter() {
+    }
+
+    /**
+     * Filter the moves by the rules of the class description.
+     * @param hits      The stones the blast of every move hits, at the cell of the move times the
+     *                  number of players plus the player index.
+     * @param keys      The key of every move, at the same index as the move. The keys of the
+     *                  moves that are kept are moved along with them to their new index.
+     * @param forPlayer Whether the targets that score best for the given player are wanted, or
+     *                  those that score worst for it, as for an opponent playing against it. In
+     *                  the latter case, the roles of the player's stones and the other stones
+     *                  are swapped.
+     * @return The moves that are kept, in the same order. The best move for the player, or the
+     * worst one, is the same as among all moves.
+     */
+    static MoveList filter(Game game, int playerNumber, MoveList moves, int[] hits, int[] keys,
+                           BlastCounter blastCounter, boolean forPlayer) {
+
+        int players = game.constants.initialPlayers();
+        int playerIndex = playerNumber - 1;
+
+        // The index of the move on every cell, -1 for cells without one
+        int[] moveIndices = new int[game.getWidth() * game.getHeight()];
+        Arrays.fill(moveIndices, -1);
+        for (int i = 0; i < moves.size(); i++) {
+            moveIndices[PackedMove.getCell(moves.get(i))] = i;
+        }
+
+        MoveList result = new MoveList(moves.size());
+        boolean noHitFound = false;
+
+        for (int i = 0; i < moves.size(); i++) {
+            int cell = PackedMove.getCell(moves.get(i));
+
+            // The stones of the opponents, if the targets that score best are wanted
+            if (!hitsAny(hits, cell, players, playerIndex, !forPlayer)) {
+                if (noHitFound) {
+                    continue;
+                }
+                noHitFound = !hitsAny(hits, cell, players, playerIndex, forPlayer);
+            }
+
+            if (isDominatedByNeighbour(game, cell, i, moveIndices, blastCounter, playerIndex,
+                    forPlayer)) {
+                continue;
+            }
+
+            keys[result.size()] = keys[i];
+            result.add(moves.get(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * @param ofPlayer Whether the stones of the player are asked for, or those of the others.
+     * @return Whether the counted blast on the cell hits any of the stones.
+     */
+    private static boolean hitsAny(int[] hits, int cell, int players, int playerIndex,
+                                   boolean ofPlayer) {
+        for (int player = 0; player < players; player++) {
+            if ((player == playerIndex) == ofPlayer && hits[cell * players + player] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether a neighbouring target whose move comes before the given index dominates the
+     * target.
+     */
+    private static boolean isDominatedByNeighbour(Game game, int cell, int index,
+                                                  int[] moveIndices, BlastCounter blastCounter,
+                                                  int playerIndex, boolean forPlayer) {
+
+        int width = game.getWidth();
+        int x = cell % width;
+        int y = cell / width;
+
+        for (int direction = 0; direction < 8; direction++) {
+            int neighbourX = x + NeighbourTable.getDeltaX(direction);
+            int neighbourY = y + NeighbourTable.getDeltaY(direction);
+
+            if (neighbourX < 0 || neighbourY < 0 || neighbourX >= width
+                    || neighbourY >= game.getHeight()) {
+                continue;
+            }
+
+            int neighbour = neighbourY * width + neighbourX;
+            int neighbourIndex = moveIndices[neighbour];
+            if (neighbourIndex != -1 && neighbourIndex < index
+                    && blastCounter.dominates(neighbour, cell, playerIndex, forPlayer)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
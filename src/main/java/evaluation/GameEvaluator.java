@@ -2,17 +2,17 @@ package evaluation;
 
 import board.*;
 import clients.SearchTimer;
-import exceptions.MoveNotValidException;
 import exceptions.OutOfTimeException;
+import game.CoordinatesGroupedByTile;
 import game.Game;
 import game.logic.MoveCalculator;
-import move.*;
+import move.MoveList;
+import move.MovePicker;
+import move.PackedMove;
 import util.Timer;
-import util.Triple;
 import util.Tuple;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Evaluates the current game situation for one player
@@ -29,7 +29,18 @@ public class GameEvaluator {
     /**
      * Stores how many cutoffs a move on a certain depth has achieved.
      */
-    private final Map<Integer, Map<Move, Integer>> moveCutoffs;
+    private final Map<Integer, Map<Integer, Integer>> moveCutoffs;
+
+    /**
+     * Reused buffers, so evaluating and sorting allocates nothing per move.
+     */
+    private final int[] mobilityCounts = new int[PackedMove.BOMB + 1];
+    private int[] sortKeys = new int[64];
+
+    /**
+     * The blast footprints of the game, kept for the whole bomb phase.
+     */
+    private BlastFootprints blastFootprints;
 
     /**
      * Value of an overwrite stone for a player
@@ -77,8 +88,7 @@ public class GameEvaluator {
                 sumUpAllRatingsForOccupiedTiles(game, player);
         rating += mobilityFactorsPerEvalPhase[evalPhase] * evaluateMobility(game, player);
         rating += rawTileFactorsPerEvalPhase[evalPhase] *
-                game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(
-                        game.getPlayer(player).getPlayerValue()).size();
+                game.coordinatesGroupedByTile.getCount(Tile.fromInt(player));
         rating += evaluateOverwriteStones(game, player);
         rating += evaluateBombs(game, player);
         return (int) rating;
@@ -122,73 +132,59 @@ public class GameEvaluator {
 
     /**
      * Evaluates the Game (which is in the Bomb Phase) and returns the best available BombMove along
-     * with his score.
+     * with his score. The move is encoded, see {@link PackedMove}.
      */
-    public Tuple<Move, Integer> evaluateBombMoves(Game game, int player, SearchTimer timer)
+    public Tuple<Integer, Integer> evaluateBombMoves(Game game, int player, SearchTimer timer)
             throws OutOfTimeException {
 
-        Move bestMove = null;
-        int bestScore = Integer.MIN_VALUE;
+        int[] tilesBeforeMove = getTileCounts(game);
+        int[] tileDifferencesBeforeMove = getTileDifferences(tilesBeforeMove, player - 1);
 
-        int initialPlayers = game.constants.initialPlayers();
-        List<Integer> numberOfTilesBeforeMove = getTilesForEachPlayer(game);
-        int ourIndex = player - 1;
-        int ourTilesBeforeMove = numberOfTilesBeforeMove.get(ourIndex);
+        BlastCounter blastCounter = new BlastCounter(game, getBlastFootprints(game));
+        MoveList moves = game.getValidMoves();
 
-        int[] tileDifferencesBeforeMove = new int[initialPlayers];
+        // Scored on this thread, as this is called at the leaves of the search
+        long best = BombMoveScorer.score(this, blastCounter, moves, tilesBeforeMove,
+                tileDifferencesBeforeMove, player - 1, new int[tilesBeforeMove.length], null,
+                null, false, timer);
 
-        for (int i = 0; i < initialPlayers - 1; i++) {
-            tileDifferencesBeforeMove[i] = numberOfTilesBeforeMove.get(i) - ourTilesBeforeMove;
+        if (best == Long.MIN_VALUE) {
+            return new Tuple<>(-1, Integer.MIN_VALUE);
         }
 
-        Timer clock = new Timer();
-        int i = 0;
-
-        for (Move move : game.getValidMoves()) {
-
-            Set<Coordinates> bombedTiles = getTilesBombed(game, move);
-            int[] tileDifferencesAfterMove =
-                    Arrays.copyOf(tileDifferencesBeforeMove, initialPlayers);
-
-            int[] bombedTilesPerPlayer = new int[initialPlayers];
+        int bestMove = moves.get(BombMoveScorer.getIndex(best));
+        int bestScore = BombMoveScorer.getScore(best);
 
-            for (Coordinates tile : bombedTiles) {
-                int playerIndex = game.getTile(tile).toPlayerIndex();
-                if(playerIndex != -1){
-                    bombedTilesPerPlayer[playerIndex]++;
-                }
-            }
-
-            for (int j = 0; j < initialPlayers; j++) {
-                tileDifferencesAfterMove[j] -= bombedTilesPerPlayer[j];
-                tileDifferencesAfterMove[j] += bombedTilesPerPlayer[ourIndex];
-            }
+        return new Tuple<>(bestMove, bestScore);
+    }
 
-            int score = 0;
-
-            for (int j = 0; j < initialPlayers; j++) {
-                if(j != ourIndex){
-                    if (numberOfTilesBeforeMove.get(j) > ourTilesBeforeMove) {
-                        score += rateTileDifference(tileDifferencesAfterMove[j]) -
-                                rateTileDifference(tileDifferencesBeforeMove[j]);
-                    } else {
-                        score += rateTileDifference(-tileDifferencesBeforeMove[j]) -
-                                rateTileDifference(-tileDifferencesAfterMove[j]);
-                    }
+    /**
+     * Rate how the differences between the tiles of the player and those of every opponent change
+     * when the players lose stones to bombs. Higher is better.
+     * @param tilesBefore           The tiles of every player before, by player index, see
+     *                              {@link #getTileCounts(Game)}.
+     * @param tileDifferencesBefore See {@link #getTileDifferences(int[], int)}.
+     * @param losses                The number of stones every player loses, by player index.
+     */
+    int rateBombLosses(int[] tilesBefore, int[] tileDifferencesBefore, int ourIndex,
+                       int[] losses) {
+
+        int score = 0;
+
+        for (int j = 0; j < losses.length; j++) {
+            if (j != ourIndex) {
+                int tileDifferenceAfter = tileDifferencesBefore[j] - losses[j] + losses[ourIndex];
+                if (tilesBefore[j] > tilesBefore[ourIndex]) {
+                    score += rateTileDifference(tileDifferenceAfter) -
+                            rateTileDifference(tileDifferencesBefore[j]);
+                } else {
+                    score += rateTileDifference(-tileDifferencesBefore[j]) -
+                            rateTileDifference(-tileDifferenceAfter);
                 }
             }
-
-            if(score > bestScore){
-                bestScore = score;
-                bestMove = move;
-            }
-
-            i++;
-            SearchTimer.timePerBombMove = (int) (clock.timePassed() / i);
-            timer.checkTime();
         }
 
-        return new Tuple<>(bestMove, bestScore);
+        return score;
     }
 
     /**
@@ -208,7 +204,7 @@ public class GameEvaluator {
     }
 
     private int getEvalPhase(Game game) {
-        int percentage = (int) ((double) game.totalTilesOccupiedCounter.getTotalTilesOccupied() /
+        int percentage = (int) ((double) game.getTotalTilesOccupied() /
                 boardInfo.getReachableTiles() * 100 + 0.5);
         for (int i = 1; i < evalPhaseThresholds.length; i++) {
             if (percentage < evalPhaseThresholds[i]) {
@@ -235,20 +231,24 @@ public class GameEvaluator {
     }
 
     private double evaluateMobility(Game game, int player) {
-        Set<Move> moves;
+
+        // Only non overwrite moves are considered for evaluation, as number of overwrite moves
+        // is not very significant
+        int movesWithoutOverwrites = 0;
 
         // Check if Moves are already cached
         if (game.getCurrentPlayerNumber() == player) {
-            moves = game.getValidMoves();
+            movesWithoutOverwrites = game.getMovesWithoutOverwrites().size();
         } else {
-            moves = MoveCalculator.getValidMovesForPlayer(game, player, null);
+            // Count without generating, a choice field allows one move per player and a bonus
+            // field one per bonus
+            MoveCalculator.countMoveTargets(game, player, mobilityCounts);
+            movesWithoutOverwrites = mobilityCounts[PackedMove.NORMAL] +
+                    mobilityCounts[PackedMove.INVERSION] + mobilityCounts[PackedMove.BOMB] +
+                    mobilityCounts[PackedMove.CHOICE] * game.constants.initialPlayers() +
+                    mobilityCounts[PackedMove.BONUS] * 2;
         }
 
-        // Only non overwrite moves are considered for evaluation, as number of overwrite moves
-        // is not very significant
-        int movesWithoutOverwrites =
-                (int) moves.stream().filter((move) -> !(move instanceof OverwriteMove)).count();
-
         // Calculate value of function that has a logarithmic gradient (and a little linear one)
         // -> difference between 0 and 5 moves is huge, between 40 and 45 little
         return 2 * logarithm(1.5, movesWithoutOverwrites + 0.5) + 0.25 * movesWithoutOverwrites - 3;
@@ -256,9 +256,13 @@ public class GameEvaluator {
 
     private int sumUpAllRatingsForOccupiedTiles(Game game, int player) {
         int sum = 0;
-        for (Coordinates tile : game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(
-                game.getPlayer(player).getPlayerValue())) {
-            sum += boardInfo.getTileRatings()[tile.y][tile.x];
+        int[][] tileRatings = boardInfo.getTileRatings();
+        Tile playerValue = Tile.fromInt(player);
+        CoordinatesGroupedByTile grouped = game.coordinatesGroupedByTile;
+        for (int cell = grouped.nextCell(playerValue, 0); cell >= 0;
+             cell = grouped.nextCell(playerValue, cell + 1)) {
+            Coordinates tile = game.getCoordinates(cell);
+            sum += tileRatings[tile.y][tile.x];
         }
         return sum;
     }
@@ -276,7 +280,7 @@ public class GameEvaluator {
      * @param move  Which move achieved the cutoff
      * @param depth On which depth the cutoff was achieved
      */
-    public void addCutoff(Move move, int depth) {
+    public void addCutoff(int move, int depth) {
         moveCutoffs.putIfAbsent(depth, new HashMap<>());
         moveCutoffs.get(depth).put(move, moveCutoffs.get(depth).getOrDefault(move, 0) + 1);
     }
@@ -289,74 +293,104 @@ public class GameEvaluator {
     |-----------------------------------------------------------------------------------------------
     */
 
-    public static Set<Move> getRelevantMoves(Game game) {
+    /**
+     * @return A new list of the relevant moves, see {@link #getRelevantMoves(Game, MoveList)}.
+     */
+    public static MoveList getRelevantMoves(Game game) {
+        MoveList result = new MoveList();
+        getRelevantMoves(game, result);
+        return result;
+    }
+
+    /**
+     * Write the valid moves without overwrite moves into the list, or all valid moves if there are
+     * only overwrite moves.
+     */
+    public static void getRelevantMoves(Game game, MoveList result) {
 
         // TODO: What if we only have one non-overwrite move which gets us in a really bad
         //  situation, but we could use an overwrite move which would help us A LOT?
 
         // TODO: Make decision between bomb or overwrite bonus in evaluation
 
-        Set<Move> movesWithoutOverwrites =
-                game.getValidMoves().stream().filter((move) -> !(move instanceof OverwriteMove))
-                        .collect(Collectors.toSet());
+        // The overwrite moves are only calculated if there is nothing else
+        result.copyFrom(game.getMovesWithoutOverwrites());
 
-        if (movesWithoutOverwrites.isEmpty()) {
-            return game.getValidMoves();
-        } else {
-            return movesWithoutOverwrites;
+        if (result.isEmpty()) {
+            result.addAll(game.getValidMoves());
         }
     }
 
     /**
-     * Quickest and roughest Move sorting. Sorts by special Moves, Cutoffs and Tile ratings. Should
-     * be used in the Search Tree.
+     * Remove moves that lead to a position equivalent to the one of another move, because a
+     * symmetry of the current position maps them onto each other. Of all cells mapped onto each
+     * other, only the moves on the one with the lowest cell index are kept. Meant for the root of
+     * the search, where the symmetries are most likely to still hold.
      */
-    public List<Move> sortMovesQuicker(Game game) {
+    public static MoveList removeSymmetricMoves(Game game, MoveList moves) {
 
-        List<Move> result = new LinkedList<>(getRelevantMoves(game));
+        List<Symmetry> symmetries = game.getStabilizingSymmetries();
 
-        result.sort((move1, move2) -> {
+        if (symmetries.isEmpty()) {
+            return moves;
+        }
 
-            Map<Move, Integer> cutoffsOnDepth =
-                    moveCutoffs.getOrDefault(game.getMoveCounter(), new HashMap<>());
+        MoveList result = new MoveList(moves.size());
 
-            int compareCutoffs = java.lang.Integer.compare(cutoffsOnDepth.getOrDefault(move1, 0),
-                    cutoffsOnDepth.getOrDefault(move2, 0));
-            if (compareCutoffs != 0) {
-                return compareCutoffs;
+        for (int i = 0; i < moves.size(); i++) {
+            int cell = PackedMove.getCell(moves.get(i));
+            if (symmetries.stream().allMatch(symmetry -> symmetry.mapCell(cell) >= cell)) {
+                result.add(moves.get(i));
             }
+        }
 
-            if(!isOverwriteBonusMove(move1) && isOverwriteBonusMove(move2)){
-                return -1;
-            }
-            if(isOverwriteBonusMove(move1) && !isOverwriteBonusMove(move2)){
-                return 1;
-            }
+        return result;
+    }
 
-            if (!isSpecialMove(move1) && isSpecialMove(move2)) {
-                return -1;
-            } else if (isSpecialMove(move1) && !isSpecialMove(move2)) {
-                return 1;
-            }
+    /**
+     * Quickest and roughest Move sorting. Sorts by special Moves, Cutoffs and Tile ratings. Should
+     * be used in the Search Tree. The moves are only ordered as far as they are taken from the
+     * picker, so nodes that cut off early do not sort all their moves.
+     * @param result       The picker to hand out the sorted moves, so it can be reused.
+     * @param highestFirst Whether the move with the highest rating comes first, as for the
+     *                     maximizer.
+     */
+    public void sortMovesQuicker(Game game, MovePicker result, boolean highestFirst) {
 
-            return java.lang.Integer.compare(getTileRatingForMove(move1),
-                    getTileRatingForMove(move2));
-        });
+        MoveList moves = result.getMoves();
+        getRelevantMoves(game, moves);
 
-        return result;
+        Map<Integer, Integer> cutoffsOnDepth = moveCutoffs.get(game.getMoveCounter());
+
+        int[] keys = getSortKeys(moves.size());
+
+        // Ordered by cutoffs, then overwrite bonus moves, then special moves, then tile rating
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int cutoffs = cutoffsOnDepth == null ? 0 : cutoffsOnDepth.getOrDefault(move, 0);
+            keys[i] = Math.min(cutoffs, 0x7FFF) << 16 |
+                    (isOverwriteBonusMove(move) ? 1 << 15 : 0) |
+                    (isSpecialMove(move) ? 1 << 14 : 0) |
+                    Math.min(getTileRatingForMove(game, move), (1 << 14) - 1);
+        }
+
+        result.order(keys, highestFirst);
     }
 
     /**
      * Quick and rough Move sorting. Sorts by Tile ratings and number of potential colored Tiles.
      * Should be used in Phi Move and in the beginning.
      */
-    public List<Move> sortMovesQuick(Game game) {
+    public MoveList sortMovesQuick(Game game) {
 
-        List<Tuple<Move, Integer>> data = new LinkedList<>();
+        MoveList result = removeSymmetricMoves(game, getRelevantMoves(game));
+
+        int[] keys = getSortKeys(result.size());
 
         // Gather data
-        for (Move move : getRelevantMoves(game)) {
-            int tileRating = getTileRatingForMove(move);
+        for (int i = 0; i < result.size(); i++) {
+            int move = result.get(i);
+            int tileRating = getTileRatingForMove(game, move);
             int tilesColored = getTilesColored(game, move);
             // Score should value both equal. Not using the product because then one rating being
             // zero leads to the whole score being zero.
@@ -364,59 +398,63 @@ public class GameEvaluator {
             if(isOverwriteBonusMove(move)){
                 score += 100;
             }
-            data.add(new Tuple<>(move, score));
+            keys[i] = score;
         }
 
         // Sort by score
-        data.sort(Comparator.comparingInt(Tuple::second));
-
-        // Reduce
-        List<Move> result = new LinkedList<>();
-        for (var tuple : data) {
-            result.add(tuple.first());
-        }
+        result.sortByKeys(keys);
 
         return result;
     }
 
     /**
      * Slowest and most accurate Move sorting. Sorts by the full Game evaluation score. Should be
-     * used at the beginning of the iterative deepening search.
+     * used at the beginning of the iterative deepening search. Every move is executed on the game
+     * and taken back afterwards, so the game is unchanged when this returns.
      */
-    public List<Tuple<Move, Game>> sortMoves(Game game, SearchTimer timer)
-            throws OutOfTimeException {
+    public MoveList sortMoves(Game game, SearchTimer timer) throws OutOfTimeException {
+
+        MoveList result = removeSymmetricMoves(game, getRelevantMoves(game));
 
-        List<Triple<Move, Game, Integer>> data = new LinkedList<>();
+        // The keys are not shared, as evaluating may sort as well
+        int[] keys = new int[result.size()];
 
         Timer clock = new Timer();
-        int i = 0;
 
-        // Get data
-        for (Move move : GameEvaluator.getRelevantMoves(game)) {
+        int player = game.getCurrentPlayerNumber();
+        game.enableUndo();
 
-            Game clonedGame = game.clone();
-            clonedGame.executeMove(move);
+        // Get data
+        for (int i = 0; i < result.size(); i++) {
 
-            data.add(new Triple<>(move, clonedGame,
-                    evaluate(clonedGame, game.getCurrentPlayerNumber())));
+            game.executeMove(result.get(i));
+            keys[i] = evaluate(game, player);
+            game.undoMove();
 
-            i++;
-            SearchTimer.timePerMove = (int) (clock.timePassed() / i);
+            SearchTimer.timePerMove = (int) (clock.timePassed() / (i + 1));
             SearchTimer.incrementNodeCount();
 
             timer.checkTime();
         }
 
         // Sort by evaluation score
-        data.sort(Comparator.comparingInt(Triple::third));
+        result.sortByKeys(keys);
 
-        // Reduce
-        List<Tuple<Move, Game>> result = new LinkedList<>();
-        for (var triple : data) {
-            result.add(new Tuple<>(triple.first(), triple.second()));
+        return result;
+    }
+
+    BlastFootprints getBlastFootprints(Game game) {
+        if (blastFootprints == null || !blastFootprints.fits(game)) {
+            blastFootprints = new BlastFootprints(game);
         }
+        return blastFootprints;
+    }
 
-        return result;
+    private int[] getSortKeys(int size) {
+        if (sortKeys.length < size) {
+            sortKeys = new int[Math.max(size, sortKeys.length * 2)];
+        }
+        return sortKeys;
     }
 
     /*
@@ -431,31 +469,40 @@ public class GameEvaluator {
         return Math.log(x) / Math.log(base);
     }
 
-    private int getTileRatingForMove(Move move) {
-        int y = move.getCoordinates().y;
-        int x = move.getCoordinates().x;
-        return boardInfo.getTileRatings()[y][x];
+    private int getTileRatingForMove(Game game, int move) {
+        int cell = PackedMove.getCell(move);
+        return boardInfo.getTileRatings()[cell / game.getWidth()][cell % game.getWidth()];
     }
 
-    public boolean isSpecialMove(Move move) {
-        return move instanceof BonusMove || move instanceof ChoiceMove ||
-                move instanceof InversionMove;
+    public boolean isSpecialMove(int move) {
+        return PackedMove.isSpecial(move);
     }
 
-    public static boolean isOverwriteBonusMove(Move move){
-        return move instanceof BonusMove bonusMove && bonusMove.getBonus() == Bonus.OVERWRITE_STONE;
+    public static boolean isOverwriteBonusMove(int move){
+        return PackedMove.isOverwriteBonus(move);
     }
 
-    private List<Integer> getTilesForEachPlayer(Game game) {
-        List<Integer> tileCountsPerPlayer = new LinkedList<>();
-
-        for (int player = 1; player <= game.constants.initialPlayers(); player++) {
-            tileCountsPerPlayer.add(
-                    game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(Tile.fromInt(player))
-                            .size());
+    /**
+     * @return The number of tiles of every player, by player index.
+     */
+    int[] getTileCounts(Game game) {
+        int[] tileCounts = new int[game.constants.initialPlayers()];
+        for (int player = 1; player <= tileCounts.length; player++) {
+            tileCounts[player - 1] = game.coordinatesGroupedByTile.getCount(Tile.fromInt(player));
         }
+        return tileCounts;
+    }
 
-        return tileCountsPerPlayer;
+    /**
+     * @return The tiles of every player minus those of the given one, by player index. Leaves out
+     * the last player, whose difference is rated as 0.
+     */
+    int[] getTileDifferences(int[] tileCounts, int ourIndex) {
+        int[] tileDifferences = new int[tileCounts.length];
+        for (int i = 0; i < tileCounts.length - 1; i++) {
+            tileDifferences[i] = tileCounts[i] - tileCounts[ourIndex];
+        }
+        return tileDifferences;
     }
 
     private List<Tuple<Integer, Integer>> getTilesForEachPlayerSortedDescending(Game game) {
@@ -463,8 +510,7 @@ public class GameEvaluator {
 
         for (int player = 1; player <= game.constants.initialPlayers(); player++) {
             tileCountsPerPlayer.add(new Tuple<>(player,
-                    game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(Tile.fromInt(player))
-                            .size()));
+                    game.coordinatesGroupedByTile.getCount(Tile.fromInt(player))));
         }
 
         // Sort players by number of tiles descending
@@ -499,32 +545,25 @@ public class GameEvaluator {
         return (int) result;
     }
 
-    public int getTilesColored(Game game, Move move) {
-        Set<Coordinates> tilesColored = new HashSet<>();
-        for (Direction direction : Direction.values()) {
-            TileReader tileReader = new TileReader(game, move.getCoordinates(), direction);
+    public int getTilesColored(Game game, int move) {
+        long[] tilesColored = Bitboard.create(game.getWidth() * game.getHeight());
+        int count = 0;
+        Tile playerValue = game.getPlayer(game.getCurrentPlayerNumber()).getPlayerValue();
+        TileReader tileReader = new TileReader(game);
+        for (int direction = 0; direction < 8; direction++) {
+            tileReader.reset(PackedMove.getCell(move), direction);
             while (tileReader.hasNext()) {
                 tileReader.next();
-                if (game.getTile(tileReader.getCoordinates()) ==
-                        game.getPlayer(game.getCurrentPlayerNumber()).getPlayerValue()) {
+                if (tileReader.getTile() == playerValue) {
                     break;
                 }
-                if (!tilesColored.add(tileReader.getCoordinates())) {
+                if (Bitboard.get(tilesColored, tileReader.getCell())) {
                     break;
                 }
+                Bitboard.set(tilesColored, tileReader.getCell());
+                count++;
             }
         }
-        return tilesColored.size();
-    }
-
-    private Set<Coordinates> getTilesBombed(Game game, Move move) {
-        if (!(move instanceof BombMove)) {
-            throw new MoveNotValidException("Non bomb move in bomb phase");
-        }
-        int bombRadius = game.constants.bombRadius();
-        Set<Coordinates> coordinates = new HashSet<>();
-        coordinates.add(move.getCoordinates());
-
-        return CoordinatesExpander.expandCoordinates(game, coordinates, bombRadius);
+        return count;
     }
 }
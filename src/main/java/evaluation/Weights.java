@@ -1,13 +1,10 @@
 package evaluation;
 
-import board.Coordinates;
 import board.CoordinatesExpander;
 import board.Tile;
 import game.Game;
 import util.Logger;
 
-import java.util.Set;
-
 public class Weights {
 
     int[][] weights;
@@ -22,7 +19,7 @@ public class Weights {
 
                 int score = 0;
 
-                if (!game.getTile(new Coordinates(x, y)).equals(Tile.WALL)) {
+                if (!game.getTile(game.getCoordinates(x, y)).equals(Tile.WALL)) {
                     score = 9;
                 }
 
@@ -35,9 +32,8 @@ public class Weights {
         for (int y = 0; y < weights.length; y++) {
             for (int x = 0; x < weights[0].length; x++) {
 
-                int neighbours =
-                        CoordinatesExpander.expandCoordinates(game, Set.of(new Coordinates(x, y)),
-                                1).size();
+                int cell = y * game.getWidth() + x;
+                int neighbours = CoordinatesExpander.get(game).expand(game, cell, 1).size();
 
                 weights[y][x] -= neighbours;
 
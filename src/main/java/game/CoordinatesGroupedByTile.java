@@ -3,61 +3,103 @@ package game;
 import board.Coordinates;
 import board.Tile;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
-public class CoordinatesGroupedByTile implements Cloneable {
+/**
+ * For each tile value, the cells that have this value. Backed by the board's bitsets and counts,
+ * so it is always up-to-date and needs no copying when cloning a game.
+ * <p>
+ * On hot paths, iterate the cell indices without allocating:
+ * <pre>
+ * for (int cell = grouped.nextCell(tile, 0); cell >= 0; cell = grouped.nextCell(tile, cell + 1))
+ * </pre>
+ */
+public class CoordinatesGroupedByTile {
 
-    private Map<Tile, Set<Coordinates>> coordinatesGroupedByTile;
+    private final Game game;
 
     public CoordinatesGroupedByTile(Game game) {
+        this.game = game;
+    }
 
-        coordinatesGroupedByTile = new HashMap<>();
-
-        for (Tile tile : Tile.values()) {
-
-            coordinatesGroupedByTile.put(tile, new HashSet<>());
-
-            for (int y = 0; y < game.getHeight(); y++) {
-                for (int x = 0; x < game.getWidth(); x++) {
-                    if (game.getTile(new Coordinates(x, y)) == tile) {
-                        coordinatesGroupedByTile.get(tile).add(new Coordinates(x, y));
-                    }
-                }
-            }
-
-        }
+    /**
+     * @return The number of cells holding the tile. O(1).
+     */
+    public int getCount(Tile tile) {
+        return game.board.getTileCount(game.toPhysical(tile));
+    }
 
+    /**
+     * @return The first cell index at or after fromCell holding the tile, or -1 if there is none.
+     */
+    public int nextCell(Tile tile, int fromCell) {
+        return game.board.nextCell(game.toPhysical(tile), fromCell);
     }
 
-    public Set<Coordinates> getAllCoordinatesWhereTileIs(Tile tile) {
-        return coordinatesGroupedByTile.get(tile);
+    /**
+     * Add all cells holding the tile to the bitset, see {@link board.Bitboard}. Does not allocate.
+     */
+    public void addBitboard(Tile tile, long[] target) {
+        game.board.addBitboard(game.toPhysical(tile), target);
     }
 
-    public void updateCoordinates(Coordinates coordinates, Tile oldValue, Tile newValue) {
-        coordinatesGroupedByTile.get(oldValue).remove(coordinates);
-        coordinatesGroupedByTile.get(newValue).add(coordinates);
+    /**
+     * @return A read-only view of all coordinates holding the tile. It reflects later changes of
+     * the board, so it must be copied before changing tiles while iterating. Prefer
+     * {@link #getCount(Tile)} and {@link #nextCell(Tile, int)}, which do not allocate.
+     */
+    public Set<Coordinates> getAllCoordinatesWhereTileIs(Tile tile) {
+        return new TileSet(tile);
     }
 
-    @Override
-    public CoordinatesGroupedByTile clone() {
-        try {
+    private class TileSet extends AbstractSet<Coordinates> {
 
-            CoordinatesGroupedByTile clone = (CoordinatesGroupedByTile) super.clone();
+        private final Tile tile;
 
-            clone.coordinatesGroupedByTile = new HashMap<>();
+        TileSet(Tile tile) {
+            this.tile = tile;
+        }
 
-            for (Map.Entry<Tile, Set<Coordinates>> entry : coordinatesGroupedByTile.entrySet()) {
-                clone.coordinatesGroupedByTile.put(entry.getKey(), new HashSet<>(entry.getValue()));
-            }
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Coordinates coordinates &&
+                    game.coordinatesLayInBoard(coordinates) && game.getTile(coordinates) == tile;
+        }
 
-            return clone;
+        @Override
+        public int size() {
+            return getCount(tile);
+        }
 
+        @Override
+        public boolean isEmpty() {
+            return nextCell(tile, 0) < 0;
         }
-        catch (CloneNotSupportedException e) {
-            throw new AssertionError(); // Can never happen
+
+        @Override
+        public Iterator<Coordinates> iterator() {
+            return new Iterator<>() {
+
+                private int next = nextCell(tile, 0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public Coordinates next() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    Coordinates result = game.getCoordinates(next);
+                    next = nextCell(tile, next + 1);
+                    return result;
+                }
+            };
         }
     }
 }
@@ -2,17 +2,20 @@ package game;
 
 import board.Board;
 import board.Coordinates;
+import board.Symmetry;
 import board.Tile;
 import exceptions.GamePhaseNotValidException;
 import exceptions.MoveNotValidException;
 import game.logic.MoveCalculator;
 import game.logic.MoveExecutor;
 import move.Move;
+import move.MoveList;
+import move.PackedMove;
 import util.Logger;
 import util.NullLogger;
 
-import java.util.Map;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Game implements Cloneable {
 
@@ -27,12 +30,35 @@ public class Game implements Cloneable {
     */
 
     /**
-     * The actual game board.
+     * The actual game board. Player tiles on the board are physical colors, which are mapped to
+     * the players owning them by {@link #logicalTiles}.
      */
-    private Board board;
+    Board board;
 
     /**
-     * Array containing all players with their information
+     * The permutation of the players' colors. For every Tile on the board (indexed by ordinal) the
+     * Tile it stands for, and the inverse. Choice and inversion moves only change these instead of
+     * recoloring every tile. Tiles that are no players are always mapped to themselves.
+     */
+    private Tile[] logicalTiles;
+    private Tile[] physicalTiles;
+
+    /**
+     * The state of all players, {@link #PLAYER_FIELDS} ints per player: overwrite stones, bombs and
+     * whether the player is disqualified. Stored flat, so cloning is a single array copy.
+     */
+    int[] playerData;
+
+    /**
+     * Offsets of the fields of a player in the player data.
+     */
+    private static final int OVERWRITE_STONES = 0;
+    private static final int BOMBS = 1;
+    private static final int DISQUALIFIED = 2;
+    private static final int PLAYER_FIELDS = 3;
+
+    /**
+     * Views of the players' state, see {@link Player}. Only created when requested.
      */
     private Player[] players;
 
@@ -44,7 +70,40 @@ public class Game implements Cloneable {
 
     private GamePhase phase;
 
-    Set<Move> validMoves;
+    /**
+     * The valid moves of the current player without overwrite moves, see {@link PackedMove}. A new
+     * list is calculated for every position, so a list handed out is never changed.
+     */
+    private MoveList movesWithoutOverwrites;
+
+    /**
+     * All valid moves of the current player. Overwrite moves are rarely needed, as the search only
+     * considers them if there is nothing else to do, so while the player has overwrite stones, this
+     * is null until requested by {@link #getValidMoves()}. Otherwise, it is the same list as
+     * {@link #movesWithoutOverwrites}.
+     * <p>
+     * In the bomb phase, there is a move for every cell that is no wall. Both lists are null until
+     * requested then, as whether there are moves and whether a move is valid can be told without
+     * them.
+     */
+    private MoveList validMoves;
+
+    /**
+     * The Zobrist key of the current position, see {@link ZobristHash}.
+     */
+    private ZobristHash hash;
+
+    /**
+     * Records executed moves, so they can be taken back. Null unless enabled by
+     * {@link #enableUndo()}.
+     */
+    private UndoJournal journal;
+
+    /**
+     * Keeps the coloring moves of all players up-to-date. Null unless enabled by
+     * {@link #enableMoveIndex()}.
+     */
+    MoveIndex moveIndex;
 
     /*
     |-----------------------------------------------------------------------------------------------
@@ -55,14 +114,14 @@ public class Game implements Cloneable {
     */
 
     /**
-     * For each tile value, caches the set of coordinates that have this value.
+     * For each tile value, the set of coordinates that have this value.
      */
     public CoordinatesGroupedByTile coordinatesGroupedByTile;
 
     /**
      * Caches the total number of tiles occupied.
      */
-    public TotalTilesOccupiedCounter totalTilesOccupiedCounter;
+    private int totalTilesOccupied;
 
     /*
     |-----------------------------------------------------------------------------------------------
@@ -82,12 +141,16 @@ public class Game implements Cloneable {
 
         // Set board
         this.board = board;
+        logicalTiles = Tile.values();
+        physicalTiles = Tile.values();
+
+        hash = new ZobristHash(board, initialPlayers);
 
         // Initialize players
-        players = new Player[initialPlayers];
-        for (int i = 0; i < initialPlayers; i++) {
-            players[i] = new Player(Tile.fromChar((char) (i + 1 + '0')), initialOverwriteStones,
-                    initialBombs);
+        playerData = new int[initialPlayers * PLAYER_FIELDS];
+        for (int i = 1; i <= initialPlayers; i++) {
+            changeOverwriteStones(i, initialOverwriteStones);
+            changeBombs(i, initialBombs);
         }
 
         constants =
@@ -95,9 +158,11 @@ public class Game implements Cloneable {
 
         // Caching
         coordinatesGroupedByTile = new CoordinatesGroupedByTile(this);
-        totalTilesOccupiedCounter = new TotalTilesOccupiedCounter(this);
+        for (int i = 1; i <= initialPlayers; i++) {
+            totalTilesOccupied += board.getTileCount(Tile.fromInt(i));
+        }
 
-        phase = GamePhase.BUILD;
+        setPhase(GamePhase.BUILD);
 
         moveCounter = 1;
         findValidPlayer();
@@ -111,9 +176,52 @@ public class Game implements Cloneable {
     |-----------------------------------------------------------------------------------------------
     */
 
+    private void setCurrentPlayer(int playerNumber) {
+        hash.changeCurrentPlayer(currentPlayer, playerNumber);
+        currentPlayer = playerNumber;
+    }
+
     private void rotateCurrentPlayer() {
-        currentPlayer = (currentPlayer % players.length) + 1;
-        validMoves = MoveCalculator.getValidMovesForPlayer(this, currentPlayer, null);
+        setCurrentPlayer((currentPlayer % constants.initialPlayers()) + 1);
+        calculateValidMoves();
+    }
+
+    /**
+     * Calculate the moves of the current player without overwrite moves, see
+     * {@link #validMoves}.
+     */
+    private void calculateValidMoves() {
+        if (phase == GamePhase.BOMB) {
+            movesWithoutOverwrites = null;
+            validMoves = null;
+            return;
+        }
+
+        movesWithoutOverwrites = calculateValidMoves(currentPlayer, false);
+        boolean overwrites = phase == GamePhase.BUILD && getOverwriteStones(currentPlayer) > 0;
+        validMoves = overwrites ? null : movesWithoutOverwrites;
+    }
+
+    private MoveList calculateValidMoves(int playerNumber, boolean withOverwrites) {
+        MoveList result = new MoveList();
+        if (moveIndex != null && phase == GamePhase.BUILD) {
+            moveIndex.getValidMoves(this, playerNumber, withOverwrites, result);
+        }
+        else {
+            MoveCalculator.getValidMovesForPlayer(this, playerNumber, null, withOverwrites, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return Whether the current player has any valid move. Only calculates the overwrite moves if
+     * there are no others.
+     */
+    private boolean hasValidMoves() {
+        if (phase == GamePhase.BOMB) {
+            return MoveCalculator.hasBombMove(this, currentPlayer);
+        }
+        return !getMovesWithoutOverwrites().isEmpty() || !getValidMoves().isEmpty();
     }
 
     void findValidPlayer() {
@@ -122,17 +230,17 @@ public class Game implements Cloneable {
             return;
         }
 
-        if (currentPlayer < 1 || currentPlayer > players.length) {
+        if (currentPlayer < 1 || currentPlayer > constants.initialPlayers()) {
             nextPlayer();
             return;
         }
 
-        if (validMoves.isEmpty()) {
+        if (!hasValidMoves()) {
             nextPlayer();
             return;
         }
 
-        if (getPlayer(currentPlayer).isDisqualified()) {
+        if (isDisqualified(currentPlayer)) {
             nextPlayer();
         }
     }
@@ -143,40 +251,72 @@ public class Game implements Cloneable {
         }
 
         int oldPlayer = currentPlayer > 0 ? currentPlayer : 1;
-        int i = 0;
-
-        do {
-            rotateCurrentPlayer();
-
-            if (oldPlayer == currentPlayer && validMoves.isEmpty()) {
-                if (phase == GamePhase.BUILD) {
-                    logger.log(
-                            "No more player has any moves in the coloring phase, entering bomb " +
-                                    "phase");
-                    phase = GamePhase.BOMB;
-                    rotateCurrentPlayer();
-                    oldPlayer = currentPlayer;
-                } else if (phase == GamePhase.BOMB) {
-                    logger.log("No more player has any bomb moves, entering end");
-                    phase = GamePhase.END;
-                    // Set player to no player because the game ended
-                    currentPlayer = 0;
-                    return;
-                }
-            }
 
-            if (i++ > 100) {
-                throw new RuntimeException("Too many iterations");
-            }
+        // Usually the next player can move, so only their moves have to be calculated
+        rotateCurrentPlayer();
+        if (!isDisqualified(currentPlayer) && hasValidMoves()) {
+            logger.debug("Current player is now " + currentPlayer);
+            return;
+        }
+
+        // Otherwise, find out which players can move at all, instead of calculating the moves of
+        // every player that has to be skipped
+        int playersToMove = getPlayersToMove();
+
+        if (playersToMove == 0 && phase == GamePhase.BUILD) {
+            logger.log("No more player has any moves in the coloring phase, entering bomb phase");
+            setPhase(GamePhase.BOMB);
+            playersToMove = getPlayersToMove();
+            // The bomb phase starts with the player after the one who could not move last
+            setCurrentPlayer((oldPlayer % constants.initialPlayers()) + 1);
+        }
 
-        } while (validMoves.isEmpty() || getPlayer(currentPlayer).isDisqualified());
+        if (playersToMove == 0) {
+            logger.log("No more player has any bomb moves, entering end");
+            setPhase(GamePhase.END);
+            // Set player to no player because the game ended
+            setCurrentPlayer(0);
+            movesWithoutOverwrites = new MoveList();
+            validMoves = movesWithoutOverwrites;
+            return;
+        }
+
+        // The next player in turn order that can move, starting with the one just rotated to
+        while ((playersToMove & (1 << currentPlayer)) == 0) {
+            setCurrentPlayer((currentPlayer % constants.initialPlayers()) + 1);
+        }
+        calculateValidMoves();
 
         logger.debug("Current player is now " + currentPlayer);
     }
 
+    /**
+     * @return A bitmask in which bit p is set if player p has a valid move in the current phase and
+     * is not disqualified. See {@link MoveCalculator#getPlayersWithMoves(Game)}.
+     */
+    private int getPlayersToMove() {
+        if (moveIndex != null && phase == GamePhase.BUILD) {
+            int result = 0;
+            for (int player = 1; player <= constants.initialPlayers(); player++) {
+                if (!isDisqualified(player) && moveIndex.hasMoves(this, player)) {
+                    result |= 1 << player;
+                }
+            }
+            return result;
+        }
+
+        int result = MoveCalculator.getPlayersWithMoves(this);
+        for (int player = 1; player <= constants.initialPlayers(); player++) {
+            if (isDisqualified(player)) {
+                result &= ~(1 << player);
+            }
+        }
+        return result;
+    }
+
     public void disqualifyPlayer(int player) {
-        getPlayer(player).disqualify();
-        if (getPlayer(currentPlayer).isDisqualified()) {
+        setDisqualified(player);
+        if (isDisqualified(currentPlayer)) {
             nextPlayer();
         }
     }
@@ -186,11 +326,60 @@ public class Game implements Cloneable {
     }
 
     public Player[] getPlayers() {
+        if (players == null) {
+            players = new Player[constants.initialPlayers()];
+            for (int i = 0; i < players.length; i++) {
+                players[i] = new Player(this, Tile.fromInt(i + 1));
+            }
+        }
         return players;
     }
 
     public Player getPlayer(int playerNumber) {
-        return players[playerNumber - 1];
+        return getPlayers()[playerNumber - 1];
+    }
+
+    public int getOverwriteStones(int playerNumber) {
+        return playerData[(playerNumber - 1) * PLAYER_FIELDS + OVERWRITE_STONES];
+    }
+
+    public int getBombs(int playerNumber) {
+        return playerData[(playerNumber - 1) * PLAYER_FIELDS + BOMBS];
+    }
+
+    public boolean isDisqualified(int playerNumber) {
+        return playerData[(playerNumber - 1) * PLAYER_FIELDS + DISQUALIFIED] != 0;
+    }
+
+    public void changeOverwriteStones(int playerNumber, int difference) {
+        int index = (playerNumber - 1) * PLAYER_FIELDS + OVERWRITE_STONES;
+        if (playerData[index] + difference < 0) {
+            throw new RuntimeException("Overwrite stones are below zero");
+        }
+        playerData[index] += difference;
+        hash.changeOverwriteStones(playerNumber - 1, difference);
+        if (isRecording()) {
+            journal.record(UndoJournal.OVERWRITE_STONES, playerNumber, difference);
+        }
+    }
+
+    public void changeBombs(int playerNumber, int difference) {
+        playerData[(playerNumber - 1) * PLAYER_FIELDS + BOMBS] += difference;
+        hash.changeBombs(playerNumber - 1, difference);
+        if (isRecording()) {
+            journal.record(UndoJournal.BOMBS, playerNumber, difference);
+        }
+    }
+
+    /**
+     * Only marks the player as disqualified, see {@link #disqualifyPlayer(int)} for the game logic.
+     */
+    void setDisqualified(int playerNumber) {
+        int index = (playerNumber - 1) * PLAYER_FIELDS + DISQUALIFIED;
+        if (playerData[index] == 0) {
+            playerData[index] = 1;
+            hash.disqualify(playerNumber - 1);
+        }
     }
 
     /*
@@ -201,25 +390,195 @@ public class Game implements Cloneable {
     |-----------------------------------------------------------------------------------------------
     */
 
+    /**
+     * Execute a move received as object, e.g. from the network.
+     */
     public void executeMove(Move move) {
-        if (!validMoves.contains(move)) {
+        if (!coordinatesLayInBoard(move.getCoordinates()) ||
+                move.getPlayerNumber() != currentPlayer) {
             throw new MoveNotValidException("Tried to execute a move that is not valid: " + move);
         }
+        executeMove(PackedMove.fromMove(move, getCellIndex(move.getCoordinates())));
+    }
+
+    /**
+     * Execute a move of the current player.
+     * @param move The move, see {@link PackedMove}.
+     */
+    public void executeMove(int move) {
+        if (!isValidMove(move)) {
+            throw new MoveNotValidException(
+                    "Tried to execute a move that is not valid: " + PackedMove.toString(move));
+        }
+
+        if (journal != null) {
+            journal.begin(currentPlayer, phase, moveCounter, totalTilesOccupied,
+                    movesWithoutOverwrites, validMoves);
+        }
+
+        try {
+            MoveExecutor.executeMove(this, currentPlayer, move);
+            moveCounter++;
+            nextPlayer();
+        }
+        finally {
+            if (journal != null) {
+                journal.end();
+            }
+        }
+    }
+
+    private boolean isValidMove(int move) {
+        if (phase == GamePhase.BOMB) {
+            return MoveCalculator.isValidBombMove(this, currentPlayer, move);
+        }
+
+        // Only overwrite moves need the overwrite moves to be calculated
+        MoveList moves = PackedMove.getType(move) == PackedMove.OVERWRITE ? getValidMoves() :
+                getMovesWithoutOverwrites();
+        return moves.contains(move);
+    }
+
+    /**
+     * Start recording all moves executed from now on, so they can be taken back with
+     * {@link #undoMove()}. Searching on a single game this way is cheaper than cloning it for every
+     * move. Clones do not take over the recorded moves.
+     */
+    public void enableUndo() {
+        if (journal == null) {
+            journal = new UndoJournal();
+        }
+    }
+
+    /**
+     * Keep the coloring moves of all players up-to-date from now on, instead of calculating the
+     * moves of the next player from scratch after every move. Pays off when many moves are executed
+     * on the same game, e.g. together with {@link #enableUndo()}. Clones do not take over the
+     * index.
+     */
+    public void enableMoveIndex() {
+        if (moveIndex == null) {
+            moveIndex = new MoveIndex(getWidth(), getHeight(), constants.initialPlayers());
+        }
+    }
+
+    /**
+     * Take back the last move executed since {@link #enableUndo()}. Restores the game to exactly
+     * the state before the move, including the hash and the valid moves.
+     */
+    public void undoMove() {
+        if (journal == null || journal.isEmpty()) {
+            throw new RuntimeException("There is no move to undo");
+        }
+
+        UndoJournal.Frame frame = journal.getLastFrame();
+
+        // Take back the changes in reverse order
+        for (int i = journal.getChangeCount() - 3; i >= frame.changes(); i -= 3) {
+            int first = journal.getChange(i + 1);
+            int second = journal.getChange(i + 2);
+            switch (journal.getChange(i)) {
+                case UndoJournal.TILE -> setTile(first, Tile.fromOrdinal(second));
+                case UndoJournal.OVERWRITE_STONES -> changeOverwriteStones(first, -second);
+                case UndoJournal.BOMBS -> changeBombs(first, -second);
+                case UndoJournal.RECOLOR -> recolorPlayers(invert(journal.getMapping(first)));
+                default -> throw new AssertionError();
+            }
+        }
 
-        MoveExecutor.executeMove(this, move);
+        setPhase(frame.phase());
+        setCurrentPlayer(frame.currentPlayer());
+        moveCounter = frame.moveCounter();
+        totalTilesOccupied = frame.totalTilesOccupied();
+        movesWithoutOverwrites = frame.movesWithoutOverwrites();
+        validMoves = frame.validMoves();
 
-        moveCounter++;
-        nextPlayer();
+        journal.removeLastFrame();
     }
 
-    public Set<Move> getValidMoves() {
+    private boolean isRecording() {
+        return journal != null && journal.isRecording();
+    }
+
+    private static Tile[] invert(Tile[] mapping) {
+        Tile[] result = new Tile[mapping.length];
+        for (int i = 0; i < mapping.length; i++) {
+            result[mapping[i].ordinal()] = Tile.fromOrdinal(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return The valid moves of the current player, see {@link PackedMove}. Must not be changed.
+     * Prefer {@link #getMovesWithoutOverwrites()} if overwrite moves are not of interest, as they
+     * are only calculated when needed.
+     */
+    public MoveList getValidMoves() {
+        if (validMoves == null) {
+            validMoves = phase == GamePhase.BOMB ? getMovesWithoutOverwrites() :
+                    calculateValidMoves(currentPlayer, true);
+        }
         return validMoves;
     }
 
+    /**
+     * @return The valid moves of the current player without overwrite moves, in the same order as
+     * in {@link #getValidMoves()}. Must not be changed.
+     */
+    public MoveList getMovesWithoutOverwrites() {
+        if (movesWithoutOverwrites == null) {
+            movesWithoutOverwrites = calculateValidMoves(currentPlayer, false);
+        }
+        return movesWithoutOverwrites;
+    }
+
     public int getMoveCounter() {
         return moveCounter;
     }
 
+    public int getTotalTilesOccupied() {
+        return totalTilesOccupied;
+    }
+
+    public void incrementTotalTilesOccupied() {
+        totalTilesOccupied++;
+    }
+
+    /**
+     * @return The 64-bit Zobrist key of the current position. Maintained incrementally, so this is
+     * O(1).
+     * @see ZobristHash
+     */
+    public long hash() {
+        return hash.getValue();
+    }
+
+    /**
+     * @return A 64-bit key that is equal for all positions which are equivalent by a symmetry of
+     * the board, see {@link ZobristHash#getCanonicalValue()}. Maintained incrementally, so this is
+     * O(symmetries).
+     */
+    public long canonicalHash() {
+        return hash.getCanonicalValue();
+    }
+
+    /**
+     * @return The symmetries of the board that keep the players and map the current position onto
+     * itself, except for the identity. Moves mapped onto each other by one of these lead to
+     * equivalent positions.
+     */
+    public List<Symmetry> getStabilizingSymmetries() {
+        List<Symmetry> result = new ArrayList<>();
+        List<Symmetry> symmetries = board.getSymmetries();
+        for (int i = 1; i < symmetries.size(); i++) {
+            Symmetry symmetry = symmetries.get(i);
+            if (symmetry.keepsPlayers() && board.isInvariantUnder(symmetry)) {
+                result.add(symmetry);
+            }
+        }
+        return result;
+    }
+
     /*
     |-----------------------------------------------------------------------------------------------
     |
@@ -232,21 +591,117 @@ public class Game implements Cloneable {
         return board.getHeight();
     }
 
+    /**
+     * @see Board#getSymmetries()
+     */
+    public List<Symmetry> getSymmetries() {
+        return board.getSymmetries();
+    }
+
     public int getWidth() {
         return board.getWidth();
     }
 
     public Tile getTile(Coordinates position) {
-        return board.getTile(position);
+        return logicalTiles[board.getTile(position).ordinal()];
     }
 
     public void setTile(Coordinates position, Tile value) {
-        coordinatesGroupedByTile.updateCoordinates(position, board.getTile(position), value);
-        board.setTile(position, value);
+        Tile oldValue = getTile(position);
+        hash.setTile(board.getCellIndex(position), oldValue, value);
+        board.setTile(position, physicalTiles[value.ordinal()]);
+        if (isRecording() && oldValue != value) {
+            journal.record(UndoJournal.TILE, board.getCellIndex(position), oldValue.ordinal());
+        }
+        if (moveIndex != null && oldValue != value) {
+            moveIndex.cellChanged(board.getCellIndex(position), physicalTiles[oldValue.ordinal()],
+                    physicalTiles[value.ordinal()]);
+        }
+    }
+
+    public Tile getTile(int cell) {
+        return logicalTiles[board.getTile(cell).ordinal()];
+    }
+
+    public void setTile(int cell, Tile value) {
+        setTile(board.getCoordinates(cell), value);
+    }
+
+    /**
+     * Recolor all tiles of players at once, as done by choice and inversion moves. Only the
+     * permutation of the players' colors is updated, the board is not touched, so this runs in
+     * O(players) independent of the number of tiles recolored. So does the hash update.
+     * @param mapping For every Tile (indexed by ordinal) the Tile its cells turn into. Only player
+     *                tiles may be mapped to other values.
+     */
+    public void recolorPlayers(Tile[] mapping) {
+
+        for (int i = 1; i <= constants.initialPlayers(); i++) {
+            Tile physical = Tile.fromInt(i);
+            Tile logical = mapping[logicalTiles[physical.ordinal()].ordinal()];
+            logicalTiles[physical.ordinal()] = logical;
+            physicalTiles[logical.ordinal()] = physical;
+        }
+
+        hash.recolor(mapping);
+
+        if (isRecording()) {
+            journal.recordRecolor(mapping);
+        }
     }
 
-    public Map<Short, Short> getTransitions() {
-        return board.getTransitions();
+    /**
+     * @return The Tile standing for the given player tile on the board, see {@link #logicalTiles}.
+     */
+    Tile toPhysical(Tile tile) {
+        return physicalTiles[tile.ordinal()];
+    }
+
+    /**
+     * @see Board#getNeighbour(int, int)
+     */
+    public int getNeighbour(int cell, int direction) {
+        return board.getNeighbour(cell, direction);
+    }
+
+    /**
+     * @see Board#getTransition(int, int)
+     */
+    public int getTransition(int cell, int direction) {
+        return board.getTransition(cell, direction);
+    }
+
+    /**
+     * @see Board#getTransitionCells(int)
+     */
+    public long[] getTransitionCells(int direction) {
+        return board.getTransitionCells(direction);
+    }
+
+    /**
+     * @see Board#getFrontier()
+     */
+    public long[] getFrontier() {
+        return board.getFrontier();
+    }
+
+    /**
+     * @see Board#getFrontierCount()
+     */
+    public int getFrontierCount() {
+        return board.getFrontierCount();
+    }
+
+    public int getCellIndex(Coordinates position) {
+        return board.getCellIndex(position);
+    }
+
+    public Coordinates getCoordinates(int cell) {
+        return board.getCoordinates(cell);
+    }
+
+    public Coordinates getCoordinates(int x, int y) {
+        return board.getCoordinates(x, y);
     }
 
     public boolean coordinatesLayInBoard(Coordinates position) {
@@ -257,6 +712,11 @@ public class Game implements Cloneable {
         return phase;
     }
 
+    private void setPhase(GamePhase phase) {
+        hash.changePhase(this.phase, phase);
+        this.phase = phase;
+    }
+
     /*
     |-----------------------------------------------------------------------------------------------
     |
@@ -279,7 +739,7 @@ public class Game implements Cloneable {
         result.append("Move: ").append(moveCounter).append("\n");
 
         result.append("Players (Overwrite Stones / Bombs)").append("\n");
-        for (Player player : players) {
+        for (Player player : getPlayers()) {
             result.append("- ").append(player.getPlayerValue().toString()).append(" (")
                     .append(player.getOverwriteStones()).append(" / ").append(player.getBombs())
                     .append(")");
@@ -292,7 +752,7 @@ public class Game implements Cloneable {
             result.append("\n");
         }
 
-        result.append(board.toString());
+        result.append(board.toString(logicalTiles));
 
         return result.toString();
     }
@@ -303,20 +763,25 @@ public class Game implements Cloneable {
 
             Game clone = (Game) super.clone();
 
+            // All state is held in flat arrays, so cloning is mostly copying these
             clone.board = this.board.clone();
+            clone.hash = this.hash.clone();
+            clone.playerData = this.playerData.clone();
+            clone.logicalTiles = this.logicalTiles.clone();
+            clone.physicalTiles = this.physicalTiles.clone();
 
-            clone.players = new Player[this.players.length];
-            for (int i = 0; i < this.players.length; i++) {
-                clone.players[i] = this.players[i].clone();
-            }
+            // Views are bound to a game, so the clone creates its own when needed
+            clone.players = null;
+
+            // The recorded moves and the index belong to this game
+            clone.journal = null;
+            clone.moveIndex = null;
 
             if (!(clone.logger instanceof NullLogger)) {
                 clone.logger = new NullLogger("");
             }
 
-            // Caches
-            clone.coordinatesGroupedByTile = this.coordinatesGroupedByTile.clone();
-            clone.totalTilesOccupiedCounter = this.totalTilesOccupiedCounter.clone();
+            clone.coordinatesGroupedByTile = new CoordinatesGroupedByTile(clone);
 
             return clone;
 
@@ -0,0 +1,414 @@
+package game;
+
+import board.Bitboard;
+import board.Tile;
+import board.TileReader;
+import game.logic.MoveCalculator;
+import move.MoveList;
+import util.IntList;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the coloring moves of all players up-to-date while moves are executed and taken back, so
+ * they do not have to be calculated from scratch for every position. See
+ * {@link Game#enableMoveIndex()}.
+ * <p>
+ * Every stone of a player sends a ray in each of the eight directions, identified by cell * 8 +
+ * direction. For every ray, the index stores the cells it looks at and what it yields: the
+ * unoccupied cell it ends on and the stones it could overwrite. For every cell, it stores the rays
+ * looking at it. A changed cell only invalidates these rays and the rays of a stone placed on it.
+ * They are walked again before the moves are read, so the cost of a move depends on the rays
+ * crossing the cells it changed, not on the size of the board. The moves of a player are the cells
+ * yielded by any of the player's rays, counted per cell.
+ * <p>
+ * Stones are kept by their color on the board, so recoloring players does not touch the index.
+ * Walls change where steps lead, which the stored rays do not capture, so placing or removing one
+ * makes the index rebuild itself when it is read the next time. That only happens around bomb
+ * moves, where the index is not used.
+ */
+class MoveIndex {
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Attributes
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    private final int cells;
+
+    /**
+     * For every ray, the ordinal of the color of the stone it starts from, or -1 if there is no
+     * stone.
+     */
+    private final byte[] rayOwners;
+
+    /**
+     * For every ray, the cells it looks at, starting with its own stone. Only the first
+     * {@link #rayCellCounts} entries are used.
+     */
+    private final int[][] rayCells;
+    private final int[] rayCellCounts;
+
+    /**
+     * For every ray, the unoccupied cell it ends on, or -1.
+     */
+    private final int[] rayTargets;
+
+    /**
+     * For every ray, the cells of stones it could overwrite. Only the first
+     * {@link #rayOverwriteCounts} entries are used.
+     */
+    private final int[][] rayOverwrites;
+    private final int[] rayOverwriteCounts;
+
+    /**
+     * For every ray and every cell it looks at, the slot of the ray in the list of that cell, see
+     * {@link #cellRays}. Allows removing a ray from the lists in constant time.
+     */
+    private final int[][] raySlots;
+
+    /**
+     * For every cell, the rays looking at it and for each of them the position of the cell in the
+     * ray's cells. Only the first {@link #cellRayCounts} entries are used.
+     */
+    private final int[][] cellRays;
+    private final int[][] cellRayPositions;
+    private final int[] cellRayCounts;
+
+    /**
+     * For every color (indexed by ordinal), how many rays end on or could overwrite each cell, and
+     * the bitsets of the cells with a count above zero. Created for the colors of players only.
+     */
+    private final int[][] targetCounts = new int[Tile.values().length][];
+    private final int[][] overwriteCounts = new int[Tile.values().length][];
+    private final long[][] targetCells = new long[Tile.values().length][];
+    private final long[][] overwriteCells = new long[Tile.values().length][];
+
+    /**
+     * The rays that have to be walked again before the moves of a color are read. For every ray
+     * the color it is queued for (0 if none), and for every color the queued rays. A ray queued
+     * for another color later is skipped in the list of the former one.
+     */
+    private final byte[] dirtyColors;
+    private final IntList[] dirtyRays = new IntList[Tile.values().length];
+
+    /**
+     * Whether the index has to be rebuilt from scratch before the moves are read.
+     */
+    private boolean stale = true;
+
+    /**
+     * Scratch lists for walking a ray.
+     */
+    private final IntList touched = new IntList();
+    private final IntList overwrites = new IntList();
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Constructor
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    MoveIndex(int width, int height, int initialPlayers) {
+        cells = width * height;
+
+        rayOwners = new byte[cells * 8];
+        Arrays.fill(rayOwners, (byte) -1);
+        rayCells = new int[cells * 8][];
+        rayCellCounts = new int[cells * 8];
+        rayTargets = new int[cells * 8];
+        rayOverwrites = new int[cells * 8][];
+        rayOverwriteCounts = new int[cells * 8];
+        raySlots = new int[cells * 8][];
+        cellRays = new int[cells][];
+        cellRayPositions = new int[cells][];
+        cellRayCounts = new int[cells];
+        dirtyColors = new byte[cells * 8];
+
+        for (int player = 1; player <= initialPlayers; player++) {
+            targetCounts[player] = new int[cells];
+            overwriteCounts[player] = new int[cells];
+            targetCells[player] = Bitboard.create(cells);
+            overwriteCells[player] = Bitboard.create(cells);
+            dirtyRays[player] = new IntList(256);
+        }
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Changes
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Invalidate the rays affected by a changed cell. They are walked again when the moves of their
+     * color are read, so rays of other players are not walked after every move.
+     * @param oldTile The color on the board before the change.
+     * @param newTile The color on the board after the change.
+     */
+    void cellChanged(int cell, Tile oldTile, Tile newTile) {
+        if (stale) {
+            return;
+        }
+
+        if (oldTile == Tile.WALL || newTile == Tile.WALL) {
+            stale = true;
+            return;
+        }
+
+        // The rays of the stone on the cell change their color, so they are removed right away
+        // and queued for the new color
+        if (oldTile.isPlayer() || newTile.isPlayer()) {
+            for (int ray = cell * 8; ray < cell * 8 + 8; ray++) {
+                removeRay(ray);
+                if (newTile.isPlayer()) {
+                    markDirty(ray, newTile.ordinal());
+                }
+            }
+        }
+
+        int[] rays = cellRays[cell];
+        for (int i = 0; i < cellRayCounts[cell]; i++) {
+            markDirty(rays[i], rayOwners[rays[i]]);
+        }
+    }
+
+    private void markDirty(int ray, int color) {
+        if (dirtyColors[ray] != color) {
+            dirtyColors[ray] = (byte) color;
+            dirtyRays[color].add(ray);
+        }
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Reading
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Write the coloring moves of the player into the list, which is cleared first. Equal to the
+     * moves calculated by {@link MoveCalculator#getValidMovesForPlayer(Game, int, long[])}.
+     * @param withOverwrites Whether to include the overwrite moves.
+     */
+    void getValidMoves(Game game, int playerNumber, boolean withOverwrites, MoveList result) {
+        int color = game.toPhysical(Tile.fromInt(playerNumber)).ordinal();
+        update(game, color);
+        MoveCalculator.getColoringMoves(game, playerNumber, targetCells[color],
+                withOverwrites ? overwriteCells[color] : null, result);
+    }
+
+    /**
+     * @return Whether the player has at least one coloring move.
+     */
+    boolean hasMoves(Game game, int playerNumber) {
+        int color = game.toPhysical(Tile.fromInt(playerNumber)).ordinal();
+        update(game, color);
+
+        if (!Bitboard.isEmpty(targetCells[color])) {
+            return true;
+        }
+
+        return game.getOverwriteStones(playerNumber) > 0 &&
+                (!Bitboard.isEmpty(overwriteCells[color]) ||
+                        game.coordinatesGroupedByTile.getCount(Tile.EXPANSION) > 0);
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Updating
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Walk the rays of the color invalidated since the last update again, or rebuild the index if
+     * it is stale.
+     */
+    private void update(Game game, int color) {
+        if (stale) {
+            rebuild(game);
+            return;
+        }
+
+        IntList rays = dirtyRays[color];
+        if (rays.isEmpty()) {
+            return;
+        }
+
+        TileReader tileReader = new TileReader(game);
+        for (int i = 0; i < rays.size(); i++) {
+            int ray = rays.get(i);
+            // Skip rays queued for another color since
+            if (dirtyColors[ray] != color) {
+                continue;
+            }
+            dirtyColors[ray] = 0;
+            removeRay(ray);
+            addRay(game, tileReader, ray);
+        }
+        rays.clear();
+    }
+
+    private void rebuild(Game game) {
+
+        for (int ray = 0; ray < cells * 8; ray++) {
+            removeRay(ray);
+        }
+        Arrays.fill(dirtyColors, (byte) 0);
+        for (IntList rays : dirtyRays) {
+            if (rays != null) {
+                rays.clear();
+            }
+        }
+
+        TileReader tileReader = new TileReader(game);
+        for (int player = 1; player <= game.constants.initialPlayers(); player++) {
+            Tile color = Tile.fromInt(player);
+            for (int cell = game.board.nextCell(color, 0); cell >= 0;
+                 cell = game.board.nextCell(color, cell + 1)) {
+                for (int direction = 0; direction < 8; direction++) {
+                    addRay(game, tileReader, cell * 8 + direction);
+                }
+            }
+        }
+
+        stale = false;
+    }
+
+    /**
+     * Walk the ray, if it starts from a stone, and add it to the index.
+     */
+    private void addRay(Game game, TileReader tileReader, int ray) {
+
+        int origin = ray >>> 3;
+        Tile color = game.board.getTile(origin);
+        if (!color.isPlayer()) {
+            return;
+        }
+
+        touched.clear();
+        overwrites.clear();
+        tileReader.reset(origin, ray & 7);
+        int target = MoveCalculator.walkRay(game, tileReader, game.getTile(origin), touched,
+                overwrites);
+
+        int owner = color.ordinal();
+        rayOwners[ray] = (byte) owner;
+        rayTargets[ray] = target;
+        rayCells[ray] = store(rayCells[ray], touched);
+        rayCellCounts[ray] = touched.size();
+        rayOverwrites[ray] = store(rayOverwrites[ray], overwrites);
+        rayOverwriteCounts[ray] = overwrites.size();
+
+        if (raySlots[ray] == null || raySlots[ray].length < touched.size()) {
+            raySlots[ray] = new int[rayCells[ray].length];
+        }
+        for (int position = 0; position < touched.size(); position++) {
+            raySlots[ray][position] = addToCell(touched.get(position), ray, position);
+        }
+
+        if (target >= 0) {
+            increment(targetCounts[owner], targetCells[owner], target);
+        }
+        for (int i = 0; i < overwrites.size(); i++) {
+            increment(overwriteCounts[owner], overwriteCells[owner], overwrites.get(i));
+        }
+    }
+
+    /**
+     * Remove the ray from the index, if it is in there.
+     */
+    private void removeRay(int ray) {
+
+        int owner = rayOwners[ray];
+        if (owner < 0) {
+            return;
+        }
+
+        int[] cellsOfRay = rayCells[ray];
+        int[] slotsOfRay = raySlots[ray];
+        for (int position = 0; position < rayCellCounts[ray]; position++) {
+            removeFromCell(cellsOfRay[position], slotsOfRay[position]);
+        }
+
+        if (rayTargets[ray] >= 0) {
+            decrement(targetCounts[owner], targetCells[owner], rayTargets[ray]);
+        }
+        int[] overwritesOfRay = rayOverwrites[ray];
+        for (int i = 0; i < rayOverwriteCounts[ray]; i++) {
+            decrement(overwriteCounts[owner], overwriteCells[owner], overwritesOfRay[i]);
+        }
+
+        rayOwners[ray] = -1;
+    }
+
+    /**
+     * Add the ray to the list of a cell it looks at.
+     * @param position The position of the cell in the ray's cells.
+     * @return The slot of the ray in the list.
+     */
+    private int addToCell(int cell, int ray, int position) {
+        int slot = cellRayCounts[cell]++;
+        if (cellRays[cell] == null) {
+            cellRays[cell] = new int[8];
+            cellRayPositions[cell] = new int[8];
+        }
+        else if (slot == cellRays[cell].length) {
+            cellRays[cell] = Arrays.copyOf(cellRays[cell], slot * 2);
+            cellRayPositions[cell] = Arrays.copyOf(cellRayPositions[cell], slot * 2);
+        }
+        cellRays[cell][slot] = ray;
+        cellRayPositions[cell][slot] = position;
+        return slot;
+    }
+
+    /**
+     * Remove a ray from the list of a cell. The last ray of the list takes its slot.
+     */
+    private void removeFromCell(int cell, int slot) {
+        int last = --cellRayCounts[cell];
+        if (slot != last) {
+            int movedRay = cellRays[cell][last];
+            int movedPosition = cellRayPositions[cell][last];
+            cellRays[cell][slot] = movedRay;
+            cellRayPositions[cell][slot] = movedPosition;
+            raySlots[movedRay][movedPosition] = slot;
+        }
+    }
+
+    private static void increment(int[] counts, long[] bitboard, int cell) {
+        if (counts[cell]++ == 0) {
+            Bitboard.set(bitboard, cell);
+        }
+    }
+
+    private static void decrement(int[] counts, long[] bitboard, int cell) {
+        if (--counts[cell] == 0) {
+            Bitboard.clear(bitboard, cell);
+        }
+    }
+
+    /**
+     * @return The values of the list in the given array, or in a new one if it is too small.
+     */
+    private static int[] store(int[] array, IntList values) {
+        if (array == null || array.length < values.size()) {
+            array = new int[Math.max(values.size(), 4)];
+        }
+        for (int i = 0; i < values.size(); i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -1,11 +1,13 @@
 package game;
 
 import board.Tile;
-import util.Logger;
 
-public class Player implements Cloneable {
-
-    private Logger logger = new Logger(this.getClass().getName());
+/**
+ * A view of one player's state. The state itself is stored in a flat int array of the game (see
+ * {@link Game#playerData}), so cloning a game does not need to clone any players. All methods
+ * delegate to the game.
+ */
+public class Player {
 
     /*
     |--------------------------------------------------------------------------
@@ -14,21 +16,19 @@ public class Player implements Cloneable {
     */
 
     /**
-     * The "color" of the player
+     * The game holding the state of this player.
      */
-    private final Tile playerValue;
+    private final Game game;
 
     /**
-     * The number of overwrite stones this player has
+     * The "color" of the player
      */
-    private int overwriteStones;
+    private final Tile playerValue;
 
     /**
-     * The number of bombs this player has
+     * The number of the player, starting at 1.
      */
-    private int bombs;
-
-    private boolean isDisqualified;
+    private final int playerNumber;
 
     /*
     |--------------------------------------------------------------------------
@@ -36,11 +36,10 @@ public class Player implements Cloneable {
     |--------------------------------------------------------------------------
     */
 
-    public Player(Tile playerValue, int overwriteStones, int bombs) {
+    Player(Game game, Tile playerValue) {
+        this.game = game;
         this.playerValue = playerValue;
-        this.overwriteStones = overwriteStones;
-        this.bombs = bombs;
-        this.isDisqualified = false;
+        this.playerNumber = playerValue.toPlayerIndex() + 1;
     }
 
     /*
@@ -54,15 +53,15 @@ public class Player implements Cloneable {
     }
 
     public int getOverwriteStones() {
-        return overwriteStones;
+        return game.getOverwriteStones(playerNumber);
     }
 
     public int getBombs() {
-        return bombs;
+        return game.getBombs(playerNumber);
     }
 
     public boolean isDisqualified() {
-        return isDisqualified;
+        return game.isDisqualified(playerNumber);
     }
 
     /*
@@ -75,47 +74,35 @@ public class Player implements Cloneable {
      * Increment overwrite stones by 1
      */
     public void incrementOverwriteStone() {
-        overwriteStones++;
+        game.changeOverwriteStones(playerNumber, 1);
     }
 
     /**
      * Increment bombs by 1
      */
     public void incrementBombs() {
-        bombs++;
+        game.changeBombs(playerNumber, 1);
     }
 
     /**
      * Decrement overwrite stones by 1
      */
     public void decrementOverwriteStones() {
-        overwriteStones--;
-        if(overwriteStones < 0) {
-            throw new RuntimeException("Overwrite stones are below zero");
-        }
+        game.changeOverwriteStones(playerNumber, -1);
     }
 
     public void decrementBombs() {
-        bombs--;
+        game.changeBombs(playerNumber, -1);
     }
 
     public void disqualify() {
-        this.isDisqualified = true;
+        game.setDisqualified(playerNumber);
     }
 
     @Override
     public String toString() {
-        return "Player{" + "playerValue=" + playerValue + ", overwriteStones=" + overwriteStones +
-                ", bombs=" + bombs + '}';
-    }
-
-    @Override
-    public Player clone() {
-        try {
-            return (Player) super.clone();
-        } catch (CloneNotSupportedException e) {
-            throw new AssertionError();
-        }
+        return "Player{" + "playerValue=" + playerValue + ", overwriteStones=" +
+                getOverwriteStones() + ", bombs=" + getBombs() + '}';
     }
 
     @Override
@@ -0,0 +1,163 @@
+package game;
+
+import board.Tile;
+import move.MoveList;
+import util.IntList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the changes moves make to a game, so that they can be taken back in reverse order. See
+ * {@link Game#undoMove()}.
+ * <p>
+ * For every move, a frame holds the state that is simply overwritten (current player, phase,
+ * counters and the cached valid moves). The changes of tiles and player counters are appended to
+ * a single int list, three ints per change: the kind of change and two values.
+ */
+class UndoJournal {
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Kinds of changes
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * A tile changed. Values: cell index and the ordinal of the old Tile.
+     */
+    static final int TILE = 0;
+
+    /**
+     * The overwrite stones of a player changed. Values: player number and difference.
+     */
+    static final int OVERWRITE_STONES = 1;
+
+    /**
+     * The bombs of a player changed. Values: player number and difference.
+     */
+    static final int BOMBS = 2;
+
+    /**
+     * The tiles of players were recolored. Values: index of the mapping and 0.
+     */
+    static final int RECOLOR = 3;
+
+    /**
+     * The state of a game before a move.
+     * @param changes    The number of changes recorded before the move.
+     * @param validMoves Null if the overwrite moves were not calculated yet.
+     */
+    record Frame(int changes, int currentPlayer, GamePhase phase, int moveCounter,
+                 int totalTilesOccupied, MoveList movesWithoutOverwrites, MoveList validMoves) {
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Attributes
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    private final List<Frame> frames = new ArrayList<>();
+
+    private final IntList changes = new IntList(256);
+
+    /**
+     * The mappings of recolor changes, see {@link Game#recolorPlayers(Tile[])}.
+     */
+    private final List<Tile[]> mappings = new ArrayList<>();
+
+    /**
+     * Whether a move is currently executed, so its changes have to be recorded.
+     */
+    private boolean recording;
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Recording
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Start recording a move.
+     */
+    void begin(int currentPlayer, GamePhase phase, int moveCounter, int totalTilesOccupied,
+               MoveList movesWithoutOverwrites, MoveList validMoves) {
+        frames.add(new Frame(changes.size(), currentPlayer, phase, moveCounter,
+                totalTilesOccupied, movesWithoutOverwrites, validMoves));
+        recording = true;
+    }
+
+    /**
+     * Stop recording after the move is executed.
+     */
+    void end() {
+        recording = false;
+    }
+
+    boolean isRecording() {
+        return recording;
+    }
+
+    void record(int kind, int first, int second) {
+        changes.add(kind);
+        changes.add(first);
+        changes.add(second);
+    }
+
+    void recordRecolor(Tile[] mapping) {
+        record(RECOLOR, mappings.size(), 0);
+        mappings.add(mapping);
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Taking back
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    /**
+     * @return The frame of the last recorded move. Its changes lie between {@link Frame#changes()}
+     * and {@link #getChangeCount()}.
+     */
+    Frame getLastFrame() {
+        return frames.get(frames.size() - 1);
+    }
+
+    int getChangeCount() {
+        return changes.size();
+    }
+
+    int getChange(int index) {
+        return changes.get(index);
+    }
+
+    Tile[] getMapping(int index) {
+        return mappings.get(index);
+    }
+
+    /**
+     * Forget the last recorded move, after it was taken back.
+     */
+    void removeLastFrame() {
+        Frame frame = frames.remove(frames.size() - 1);
+        for (int i = frame.changes(); i < changes.size(); i += 3) {
+            if (changes.get(i) == RECOLOR) {
+                mappings.remove(mappings.size() - 1);
+            }
+        }
+        changes.truncate(frame.changes());
+    }
+}
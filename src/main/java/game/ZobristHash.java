@@ -0,0 +1,276 @@
+package game;
+
+import board.Board;
+import board.Symmetry;
+import board.Tile;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A 64-bit Zobrist key of a game position, which is updated incrementally whenever the position
+ * changes. Two games with the same tiles, the same overwrite stones, bombs and disqualifications
+ * of all players, the same current player and the same phase have the same key.
+ * <p>
+ * Unlike the classic Zobrist hashing, the keys are combined by addition instead of xor, and the
+ * key of a tile on a cell is the product of a random key of the cell and a random (odd) key of
+ * the tile value. This way, the sum of the cell keys of every tile value is known, and recoloring
+ * all tiles of a player (choice and inversion moves) updates the hash in O(players) instead of
+ * once per tile. Counts (overwrite stones, bombs) are added as multiples of their key. As all
+ * tile keys are odd, their differences are even, so the lowest bit of the sum never changes. The
+ * sum is therefore mixed before it is handed out, which spreads every bit over the whole key.
+ * <p>
+ * The keys are generated from a fixed seed, so the same position has the same key in every run.
+ * <p>
+ * For every symmetry of the board that keeps the players' numbers, the key of the position
+ * mapped by the symmetry is maintained as well. The smallest of these is the canonical key, which
+ * is equal for all positions that are equivalent by symmetry.
+ */
+public class ZobristHash implements Cloneable {
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Constants
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    private static final Tile[] TILES = Tile.values();
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Keys
+    |
+    |   The keys never change, so they are shared between all clones.
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * For every symmetry that keeps the players, the key of the image of every cell index. The
+     * first one belongs to the identity, so it holds the random keys of the cells themselves.
+     */
+    private final long[][] cellKeys;
+
+    /**
+     * A random odd key per Tile, indexed by ordinal.
+     */
+    private final long[] tileKeys;
+
+    /**
+     * Keys per player, indexed by player index (0-based).
+     */
+    private final long[] overwriteStoneKeys;
+    private final long[] bombKeys;
+    private final long[] disqualificationKeys;
+
+    /**
+     * A key per player number, including 0 (no current player).
+     */
+    private final long[] currentPlayerKeys;
+
+    /**
+     * A key per phase, indexed by ordinal.
+     */
+    private final long[] phaseKeys;
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   State
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * The key of everything except the tiles, which is not changed by symmetries.
+     */
+    private long stateValue;
+
+    /**
+     * For every symmetry, the key of the tiles.
+     */
+    private long[] tileValues;
+
+    /**
+     * For every symmetry and every Tile, the sum of the keys of all cells that hold it. The sum of
+     * a symmetry i and a Tile lies at index i * number of tiles + ordinal.
+     */
+    private long[] cellKeySums;
+
+    /**
+     * Holds the new sums while recoloring, so that a recolor allocates nothing. Swapped with
+     * {@link #cellKeySums} afterwards. Not shared with clones.
+     */
+    private long[] recoloredCellKeySums;
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Constructor
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Create the hash of the tiles on the board. Players and game state have to be added by the
+     * game.
+     */
+    public ZobristHash(Board board, int players) {
+
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        int cells = board.getWidth() * board.getHeight();
+
+        long[] keys = random.longs(cells).toArray();
+        tileKeys = random.longs(TILES.length).map(key -> key | 1).toArray();
+        overwriteStoneKeys = random.longs(players).toArray();
+        bombKeys = random.longs(players).toArray();
+        disqualificationKeys = random.longs(players).toArray();
+        currentPlayerKeys = random.longs(players + 1).toArray();
+        phaseKeys = random.longs(GamePhase.values().length).toArray();
+
+        List<Symmetry> symmetries =
+                board.getSymmetries().stream().filter(Symmetry::keepsPlayers).toList();
+
+        cellKeys = new long[symmetries.size()][cells];
+        for (int i = 0; i < symmetries.size(); i++) {
+            for (int cell = 0; cell < cells; cell++) {
+                cellKeys[i][cell] = keys[symmetries.get(i).mapCell(cell)];
+            }
+        }
+
+        tileValues = new long[symmetries.size()];
+        cellKeySums = new long[symmetries.size() * TILES.length];
+
+        for (int cell = 0; cell < cells; cell++) {
+            Tile tile = board.getTile(cell);
+            for (int i = 0; i < cellKeys.length; i++) {
+                cellKeySums[i * TILES.length + tile.ordinal()] += cellKeys[i][cell];
+                tileValues[i] += cellKeys[i][cell] * tileKeys[tile.ordinal()];
+            }
+        }
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Updates
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public void setTile(int cell, Tile oldValue, Tile newValue) {
+        long difference = tileKeys[newValue.ordinal()] - tileKeys[oldValue.ordinal()];
+        for (int i = 0; i < cellKeys.length; i++) {
+            long cellKey = cellKeys[i][cell];
+            cellKeySums[i * TILES.length + oldValue.ordinal()] -= cellKey;
+            cellKeySums[i * TILES.length + newValue.ordinal()] += cellKey;
+            tileValues[i] += cellKey * difference;
+        }
+    }
+
+    /**
+     * Update the hash for recoloring all tiles of some values at once. Runs in O(tile values),
+     * independent of the number of tiles recolored.
+     * @param mapping For every Tile (indexed by ordinal) the Tile its cells turn into.
+     */
+    public void recolor(Tile[] mapping) {
+        long[] newCellKeySums = recoloredCellKeySums;
+        if (newCellKeySums == null) {
+            newCellKeySums = new long[cellKeySums.length];
+        }
+        else {
+            Arrays.fill(newCellKeySums, 0);
+        }
+        for (int i = 0; i < cellKeys.length; i++) {
+            int offset = i * TILES.length;
+            for (int tile = 0; tile < TILES.length; tile++) {
+                int target = mapping[tile].ordinal();
+                newCellKeySums[offset + target] += cellKeySums[offset + tile];
+                tileValues[i] += cellKeySums[offset + tile] * (tileKeys[target] - tileKeys[tile]);
+            }
+        }
+        recoloredCellKeySums = cellKeySums;
+        cellKeySums = newCellKeySums;
+    }
+
+    public void changeOverwriteStones(int playerIndex, int difference) {
+        stateValue += overwriteStoneKeys[playerIndex] * difference;
+    }
+
+    public void changeBombs(int playerIndex, int difference) {
+        stateValue += bombKeys[playerIndex] * difference;
+    }
+
+    public void disqualify(int playerIndex) {
+        stateValue += disqualificationKeys[playerIndex];
+    }
+
+    public void changeCurrentPlayer(int oldPlayerNumber, int newPlayerNumber) {
+        stateValue += currentPlayerKeys[newPlayerNumber] - currentPlayerKeys[oldPlayerNumber];
+    }
+
+    /**
+     * @param oldPhase The phase before, or null if there was none yet.
+     */
+    public void changePhase(GamePhase oldPhase, GamePhase newPhase) {
+        if (oldPhase != null) {
+            stateValue -= phaseKeys[oldPhase.ordinal()];
+        }
+        stateValue += phaseKeys[newPhase.ordinal()];
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Getters
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public long getValue() {
+        return mix(tileValues[0]) + stateValue;
+    }
+
+    /**
+     * @return The smallest key of all images of the position under the symmetries that keep the
+     * players.
+     */
+    public long getCanonicalValue() {
+        long result = mix(tileValues[0]);
+        for (int i = 1; i < tileValues.length; i++) {
+            result = Math.min(result, mix(tileValues[i]));
+        }
+        return result + stateValue;
+    }
+
+    /**
+     * Spread every bit of the value over all bits of the result (the finalizer of SplitMix64).
+     * Distinct values stay distinct.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    @Override
+    public ZobristHash clone() {
+        try {
+            ZobristHash clone = (ZobristHash) super.clone();
+            clone.tileValues = this.tileValues.clone();
+            clone.cellKeySums = this.cellKeySums.clone();
+            clone.recoloredCellKeySums = null;
+            return clone;
+        }
+        catch (CloneNotSupportedException e) {
+            throw new AssertionError(); // Can never happen
+        }
+    }
+}
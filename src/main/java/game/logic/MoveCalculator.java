@@ -1,181 +1,470 @@
 package game.logic;
 
-import board.Coordinates;
-import board.Direction;
+import board.Bitboard;
+import board.NeighbourTable;
 import board.Tile;
 import board.TileReader;
 import exceptions.GamePhaseNotValidException;
+import game.CoordinatesGroupedByTile;
 import game.Game;
-import game.Player;
-import move.*;
+import move.Bonus;
+import move.MoveList;
+import move.PackedMove;
+import util.IntList;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 public final class MoveCalculator {
 
+    /**
+     * One ray fill per thread, as it holds scratch space. See {@link RayFill}.
+     */
+    private static final ThreadLocal<RayFill> RAY_FILLS = new ThreadLocal<>();
+
+    /**
+     * Walking back from the frontier cells is cheaper than following the rays of all stones as long
+     * as there are less than this many frontier cells per own stone, see
+     * {@link #calculateColoringMovesFromFrontier}.
+     */
+    private static final int FRONTIER_CELLS_PER_STONE = 2;
+
     /**
      * @param playerNumber Number of player that moves are calculated for
-     * @param coordinates  Coordinates of community that moves should be calculated for. If moves
-     *                     should be calculated for the whole board coordinates must be null
-     * @return Valid Moves for this Player on the specified Coordinates
+     * @param cells        Bitset of the cells of the community that moves should be calculated
+     *                     for. If moves should be calculated for the whole board, it must be null
+     * @return Valid Moves for this Player on the specified cells, see {@link PackedMove}
+     */
+    public static MoveList getValidMovesForPlayer(Game game, int playerNumber, long[] cells) {
+        MoveList result = new MoveList();
+        getValidMovesForPlayer(game, playerNumber, cells, result);
+        return result;
+    }
+
+    /**
+     * Like {@link #getValidMovesForPlayer(Game, int, long[])}, but writes the moves into the given
+     * list, which is cleared first. The moves are sorted ascending and free of duplicates.
+     */
+    public static void getValidMovesForPlayer(Game game, int playerNumber, long[] cells,
+                                              MoveList result) {
+        getValidMovesForPlayer(game, playerNumber, cells, true, result);
+    }
+
+    /**
+     * Like {@link #getValidMovesForPlayer(Game, int, long[], MoveList)}, but may leave out the
+     * overwrite moves, which saves enumerating all overwritable cells.
+     * @param withOverwrites Whether to include the overwrite moves.
      */
-    public static Set<Move> getValidMovesForPlayer(Game game, int playerNumber,
-                                                   Set<Coordinates> coordinates) {
+    public static void getValidMovesForPlayer(Game game, int playerNumber, long[] cells,
+                                              boolean withOverwrites, MoveList result) {
+
+        result.clear();
+
+        switch (game.getPhase()) {
+            case BUILD -> calculateAllColoringMoves(game, playerNumber, cells, withOverwrites,
+                    result);
+            case BOMB -> getAllBombMoves(game, playerNumber, result);
+            default -> throw new GamePhaseNotValidException(
+                    "No valid game phase to calculate moves for");
+        }
+
+        // Rays from different own tiles may end on the same cell
+        result.sortAndRemoveDuplicates();
+    }
+
+    /**
+     * Count the valid moves of the player without generating them. Instead of the moves, the
+     * distinct cells they target are counted per move type, so a bonus field counts once although
+     * it allows two moves.
+     * @param counts Receives the counts, indexed by the move types of {@link PackedMove}. Must have
+     *               room for all types.
+     */
+    public static void countMoveTargets(Game game, int playerNumber, int[] counts) {
+
+        Arrays.fill(counts, 0);
 
         switch (game.getPhase()) {
             case BUILD -> {
-                return calculateAllColoringMoves(game, playerNumber, coordinates);
+                RayFill rayFill = followRays(game, playerNumber, null);
+                counts[PackedMove.NORMAL] = rayFill.countTargets(game, Tile.EMPTY);
+                counts[PackedMove.CHOICE] = rayFill.countTargets(game, Tile.CHOICE);
+                counts[PackedMove.INVERSION] = rayFill.countTargets(game, Tile.INVERSION);
+                counts[PackedMove.BONUS] = rayFill.countTargets(game, Tile.BONUS);
+                if (game.getOverwriteStones(playerNumber) > 0) {
+                    counts[PackedMove.OVERWRITE] = rayFill.countOverwrites();
+                }
             }
             case BOMB -> {
-                return getAllBombMoves(game, playerNumber);
+                if (game.getBombs(playerNumber) > 0) {
+                    counts[PackedMove.BOMB] = game.getWidth() * game.getHeight() -
+                            game.coordinatesGroupedByTile.getCount(Tile.WALL);
+                }
+            }
+            default -> throw new GamePhaseNotValidException(
+                    "No valid game phase to count moves for");
+        }
+    }
+
+    /**
+     * Find out which players have at least one valid move, for all players in one call. The
+     * bitsets of the board are gathered once, and following the rays of a player stops at the
+     * first move found, so this is much cheaper than calculating the moves of every player.
+     * @return A bitmask in which bit p is set if player p has a valid move.
+     */
+    public static int getPlayersWithMoves(Game game) {
+
+        int result = 0;
+
+        switch (game.getPhase()) {
+            case BUILD -> {
+                RayFill rayFill = getRayFill(game);
+                rayFill.prepare(game);
+                boolean expansions = game.coordinatesGroupedByTile.getCount(Tile.EXPANSION) > 0;
+
+                for (int player = 1; player <= game.constants.initialPlayers(); player++) {
+                    if (hasColoringMove(game, rayFill, player, expansions)) {
+                        result |= 1 << player;
+                    }
+                }
+            }
+            case BOMB -> {
+                for (int player = 1; player <= game.constants.initialPlayers(); player++) {
+                    if (hasBombMove(game, player)) {
+                        result |= 1 << player;
+                    }
+                }
             }
             default -> throw new GamePhaseNotValidException(
                     "No valid game phase to calculate moves for");
         }
+
+        return result;
     }
 
-    private static Set<Move> calculateAllColoringMoves(Game game, int playerNumber,
-                                                       Set<Coordinates> coordinates) {
+    /**
+     * @param rayFill    Prepared for the current board, see {@link RayFill#prepare}.
+     * @param expansions Whether there are expansion stones on the board.
+     */
+    private static boolean hasColoringMove(Game game, RayFill rayFill, int playerNumber,
+                                           boolean expansions) {
 
-        Player player = game.getPlayer(playerNumber);
+        // Every expansion stone can be overwritten
+        if (expansions && game.getOverwriteStones(playerNumber) > 0) {
+            return true;
+        }
 
-        HashSet<Move> moves = new HashSet<>();
+        if (rayFill.follow(game, playerNumber, null, true)) {
+            return true;
+        }
 
-        Set<Coordinates> coordinatesToCheckForValidMoves =
-                game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(player.getPlayerValue());
+        walkTransitionRays(game, rayFill, playerNumber);
+        return !rayFill.walkedMoves.isEmpty();
+    }
 
-        if (coordinates != null) {
-            coordinatesToCheckForValidMoves.removeIf(
-                    coordinate -> !coordinates.contains(coordinate));
+    private static void calculateAllColoringMoves(Game game, int playerNumber, long[] cells,
+                                                  boolean withOverwrites, MoveList moves) {
+
+        // Without overwrite moves, only the unoccupied cells rays end on are moves. Late in the
+        // game the player owns many stones, but only few cells are left next to stones, so
+        // searching from those is cheaper than following the rays of all stones.
+        boolean overwrites = withOverwrites && game.getOverwriteStones(playerNumber) > 0;
+        if (!overwrites && game.getFrontier() != null &&
+                game.getFrontierCount() < game.coordinatesGroupedByTile.getCount(
+                        Tile.fromInt(playerNumber)) * FRONTIER_CELLS_PER_STONE) {
+            calculateColoringMovesFromFrontier(game, playerNumber, cells, moves);
+            return;
         }
 
-        for (Coordinates occupiedTile : coordinatesToCheckForValidMoves) {
-            if (game.getTile(occupiedTile) != player.getPlayerValue()) {
-                throw new AssertionError("Wrong coordinates in Player" + player + "'s List stones");
+        RayFill rayFill = followRays(game, playerNumber, cells);
+        addColoringMoves(game, playerNumber, rayFill.targets,
+                withOverwrites ? rayFill.overwrites : null, moves);
+    }
+
+    /**
+     * Find the moves onto unoccupied cells by walking back from every cell of the frontier, see
+     * {@link Game#getFrontier()}, instead of following the rays of the own stones. Overwrite moves
+     * are not found this way.
+     */
+    private static void calculateColoringMovesFromFrontier(Game game, int playerNumber,
+                                                           long[] cells, MoveList moves) {
+        Tile playerValue = Tile.fromInt(playerNumber);
+        long[] frontier = game.getFrontier();
+
+        for (int cell = Bitboard.nextSetBit(frontier, 0); cell >= 0;
+             cell = Bitboard.nextSetBit(frontier, cell + 1)) {
+            if (isRayTarget(game, cell, playerValue, cells)) {
+                addMovesOnUnoccupiedCell(game, cell, moves);
             }
-            for (Direction direction : Direction.values()) {
-                TileReader tileReader = new TileReader(game, occupiedTile, direction);
-                Set<Move> movesForPieceInDirection =
-                        getValidMovesForPieceInDirection(game, tileReader, playerNumber);
-                if (movesForPieceInDirection != null) {
-                    moves.addAll(movesForPieceInDirection);
+        }
+    }
+
+    /**
+     * Check whether a ray of the player ends on the unoccupied cell. Walks back from the cell in
+     * every direction: a ray ends here if the walk runs over stones of other players or expansion
+     * stones and then reaches an own stone. Transitions link both of their ends, so walking back
+     * follows them like the rays do.
+     * @param cells Bitset of the cells the rays may start from, or null for the whole board.
+     */
+    private static boolean isRayTarget(Game game, int target, Tile playerValue, long[] cells) {
+
+        // See walkRay
+        int maxRayLength = game.getWidth() * game.getHeight() * 8;
+
+        for (int direction = 0; direction < 8; direction++) {
+            int step = game.getNeighbour(target, direction);
+
+            for (int length = 0; step != NeighbourTable.NONE && length <= maxRayLength; length++) {
+                int cell = NeighbourTable.getCell(step);
+                Tile tile = game.getTile(cell);
+
+                if (tile.isUnoccupied()) {
+                    break;
+                }
+                if (tile == playerValue) {
+                    // A ray needs at least one stone between the own stone and its end
+                    if (length > 0 && (cells == null || Bitboard.get(cells, cell))) {
+                        return true;
+                    }
+                    break;
                 }
+                step = game.getNeighbour(cell, NeighbourTable.getDirection(step));
             }
         }
+        return false;
+    }
+
+    /**
+     * Write the coloring moves of the player into the list, which is cleared first. The moves are
+     * sorted ascending and free of duplicates, like those of
+     * {@link #getValidMovesForPlayer(Game, int, long[], MoveList)}.
+     * @param targets    Bitset of the unoccupied cells the player's rays end on.
+     * @param overwrites Bitset of the player cells the player's rays pass behind the first
+     *                   neighbour. Only used if the player has overwrite stones left. Null to
+     *                   leave out the overwrite moves.
+     */
+    public static void getColoringMoves(Game game, int playerNumber, long[] targets,
+                                        long[] overwrites, MoveList result) {
+        result.clear();
+        addColoringMoves(game, playerNumber, targets, overwrites, result);
+        result.sortAndRemoveDuplicates();
+    }
+
+    private static void addColoringMoves(Game game, int playerNumber, long[] targets,
+                                         long[] overwrites, MoveList moves) {
+
+        // Rays ending on unoccupied cells
+        for (int cell = Bitboard.nextSetBit(targets, 0); cell >= 0;
+             cell = Bitboard.nextSetBit(targets, cell + 1)) {
+            addMovesOnUnoccupiedCell(game, cell, moves);
+        }
+
+        if (overwrites != null && game.getOverwriteStones(playerNumber) > 0) {
+            for (int cell = Bitboard.nextSetBit(overwrites, 0); cell >= 0;
+                 cell = Bitboard.nextSetBit(overwrites, cell + 1)) {
+                moves.add(PackedMove.overwrite(cell));
+            }
 
-        if (player.getOverwriteStones() > 0) {
             // Add overwrite moves on expansion tiles
-            for (var coordinate : game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(
-                    Tile.EXPANSION)) {
-                moves.add(new OverwriteMove(playerNumber, coordinate));
+            CoordinatesGroupedByTile grouped = game.coordinatesGroupedByTile;
+            for (int cell = grouped.nextCell(Tile.EXPANSION, 0); cell >= 0;
+                 cell = grouped.nextCell(Tile.EXPANSION, cell + 1)) {
+                moves.add(PackedMove.overwrite(cell));
             }
         }
+    }
 
-        return moves;
+    /**
+     * Follow all rays of the player, see {@link RayFill}. Rays that may pass a transition are
+     * walked one step at a time and merged into the results.
+     */
+    private static RayFill followRays(Game game, int playerNumber, long[] cells) {
+
+        RayFill rayFill = getRayFill(game);
+        rayFill.calculate(game, playerNumber, cells);
+
+        walkTransitionRays(game, rayFill, playerNumber);
+        rayFill.addWalkedMoves();
+
+        return rayFill;
     }
 
-    private static Set<Move> getAllBombMoves(Game game, int player) {
+    /**
+     * Walk the rays the ray fill could not follow because they may pass a transition, one step at
+     * a time. The moves are written to {@link RayFill#walkedMoves}.
+     */
+    private static void walkTransitionRays(Game game, RayFill rayFill, int playerNumber) {
+
+        MoveList walkedMoves = rayFill.walkedMoves;
+        walkedMoves.clear();
 
-        if (game.getPlayer(player).getBombs() == 0) {
-            return new HashSet<>();
+        IntList transitionRays = rayFill.transitionRays;
+        if (transitionRays.isEmpty()) {
+            return;
         }
 
-        Set<Move> result = new HashSet<>();
+        Tile playerValue = Tile.fromInt(playerNumber);
+        boolean hasOverwriteStones = game.getOverwriteStones(playerNumber) > 0;
+        IntList overwrites = rayFill.walkedOverwrites;
 
-        // Bombs can be thrown on every tile which is not a wall.
-        for (Tile tile : Tile.values()) {
-            if (tile == Tile.WALL) {
-                continue;
-            }
+        TileReader tileReader = new TileReader(game);
+        for (int i = 0; i < transitionRays.size(); i++) {
+            int ray = transitionRays.get(i);
+            tileReader.reset(NeighbourTable.getCell(ray), NeighbourTable.getDirection(ray));
+
+            overwrites.clear();
+            int target = walkRay(game, tileReader, playerValue, null, overwrites);
 
-            for (Coordinates position : game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(
-                    tile)) {
-                result.add(new BombMove(player, position));
+            if (hasOverwriteStones) {
+                for (int j = 0; j < overwrites.size(); j++) {
+                    walkedMoves.add(PackedMove.overwrite(overwrites.get(j)));
+                }
+            }
+            if (target >= 0) {
+                addMovesOnUnoccupiedCell(game, target, walkedMoves);
             }
+        }
+    }
+
+    /**
+     * @return The ray fill of the current thread, sized for the board of the game.
+     */
+    private static RayFill getRayFill(Game game) {
+        RayFill rayFill = RAY_FILLS.get();
+        if (rayFill == null || !rayFill.fits(game.getWidth(), game.getHeight())) {
+            rayFill = new RayFill(game.getWidth(), game.getHeight());
+            RAY_FILLS.set(rayFill);
+        }
+        return rayFill;
+    }
 
+    private static void getAllBombMoves(Game game, int player, MoveList result) {
+
+        if (game.getBombs(player) == 0) {
+            return;
         }
-        return result;
+
+        // Bombs can be thrown on every tile which is not a wall. Going through the cells in order
+        // keeps the moves sorted.
+        for (int cell = 0; cell < game.getWidth() * game.getHeight(); cell++) {
+            if (game.getTile(cell) != Tile.WALL) {
+                result.add(PackedMove.bomb(cell));
+            }
+        }
+    }
+
+    /**
+     * Check whether the player can throw a bomb, without generating the bomb moves.
+     */
+    public static boolean hasBombMove(Game game, int playerNumber) {
+        return game.getBombs(playerNumber) > 0 && game.getWidth() * game.getHeight() >
+                game.coordinatesGroupedByTile.getCount(Tile.WALL);
+    }
+
+    /**
+     * Check whether the move is a valid bomb move of the player in O(1), without generating the
+     * bomb moves, which would be one per cell.
+     */
+    public static boolean isValidBombMove(Game game, int playerNumber, int move) {
+        int cell = PackedMove.getCell(move);
+        return move == PackedMove.bomb(cell) && cell < game.getWidth() * game.getHeight() &&
+                game.getTile(cell) != Tile.WALL && game.getBombs(playerNumber) > 0;
     }
 
 
     /**
-     * @param tileReader   tileReader with coordinates and direction of first neighbour of own tile
-     * @param playerNumber Tile of player that moves are calculated for
-     * @return Valid moves for one piece for one of eight directions
+     * Walk the ray of an own stone in one direction, one step at a time. The result does not
+     * depend on the overwrite stones of the player, the caller decides whether overwrites are
+     * moves.
+     * @param tileReader  tileReader with coordinates of the own tile and direction of the ray
+     * @param playerValue Tile of player that moves are calculated for
+     * @param touched     Receives every cell the walk looks at, starting with the own tile. May be
+     *                    null.
+     * @param overwrites  Receives the cells of player tiles the ray passes behind the first
+     *                    neighbour, which could be overwritten
+     * @return The cell of the unoccupied tile the ray ends on, or -1 if it ends otherwise
      */
-    private static Set<Move> getValidMovesForPieceInDirection(Game game, TileReader tileReader,
-                                                              int playerNumber) {
-        Player player = game.getPlayer(playerNumber);
-        Set<Move> movesPerDirection = new HashSet<>();
+    public static int walkRay(Game game, TileReader tileReader, Tile playerValue, IntList touched,
+                              IntList overwrites) {
 
-        // Coordinates of tile moves are searched for
-        Coordinates ownTileCoordinates = tileReader.getCoordinates();
+        // Cell of tile moves are searched for
+        int ownTileCell = tileReader.getCell();
+        if (touched != null) {
+            touched.add(ownTileCell);
+        }
 
-        if (!isFirstNeighbourValid(tileReader, player.getPlayerValue())) {
-            return null;
+        boolean firstNeighbourValid = isFirstNeighbourValid(tileReader, playerValue);
+        if (touched != null && tileReader.getTileNumber() > 0) {
+            touched.add(tileReader.getCell());
+        }
+        if (!firstNeighbourValid) {
+            return -1;
         }
         // TileReader points on the first neighbour now!
 
-        // Coordinates of first Neighbour from the tile moves are searched for
-        Coordinates firstNeighbourTileCoordinates = tileReader.getCoordinates();
+        // Cell of first Neighbour from the tile moves are searched for
+        int firstNeighbourTileCell = tileReader.getCell();
         // Stats of the current tile which is updated in the while loop
         Tile currentTile = tileReader.getTile();
-        Coordinates currentCoordinates = firstNeighbourTileCoordinates;
+        int currentCell = firstNeighbourTileCell;
+
+        // A ray can visit every cell in every direction at most once, otherwise it runs in circles
+        // through transitions
+        int maxRayLength = game.getWidth() * game.getHeight() * 8;
 
         // While there is an occupied tile
         while (!currentTile.isUnoccupied()) {
 
             // Check if there is a dead end
-            if (!tileReader.hasNext()) {
-                return movesPerDirection;
+            if (!tileReader.hasNext() || tileReader.getTileNumber() > maxRayLength) {
+                return -1;
             }
 
             // Go to next tile in direction
             tileReader.next();
             currentTile = tileReader.getTile();
-            currentCoordinates = tileReader.getCoordinates();
+            currentCell = tileReader.getCell();
+            if (touched != null) {
+                touched.add(currentCell);
+            }
 
             // Check if piece that we started from is reached
-            if (currentCoordinates.equals(ownTileCoordinates)) {
-                return movesPerDirection;
+            if (currentCell == ownTileCell) {
+                return -1;
             }
 
             // Overwrite Logic
-            // Check if player has overwrite stones and if the current tile can be overwritten
-            if (player.getOverwriteStones() > 0 && currentTile.isPlayer()) {
-                // Check if current Tile is the neighbour from the tile moves are searched for
-                if (!(currentCoordinates.equals(firstNeighbourTileCoordinates))) {
-                    movesPerDirection.add(new OverwriteMove(playerNumber, currentCoordinates));
-                }
+            // Check if the current tile can be overwritten and is not the neighbour from the tile
+            // moves are searched for
+            if (currentTile.isPlayer() && currentCell != firstNeighbourTileCell) {
+                overwrites.add(currentCell);
             }
 
             // If an own tile is overwritten, return because this tile is handled separately
-            if (currentTile == player.getPlayerValue()) {
-                return movesPerDirection;
+            if (currentTile == playerValue) {
+                return -1;
             }
         }
-        // If necessary create special move
-        switch (currentTile) {
+
+        return currentCell;
+    }
+
+    /**
+     * Add the moves onto an unoccupied cell a ray ends on, depending on its tile.
+     */
+    private static void addMovesOnUnoccupiedCell(Game game, int cell, MoveList moves) {
+        switch (game.getTile(cell)) {
             case CHOICE -> {
-                for (int playerToSwapWith = 1; playerToSwapWith <= game.getPlayers().length;
+                for (int playerToSwapWith = 1; playerToSwapWith <= game.constants.initialPlayers();
                      playerToSwapWith++) {
-                    movesPerDirection.add(
-                            new ChoiceMove(playerNumber, currentCoordinates, playerToSwapWith));
+                    moves.add(PackedMove.choice(cell, playerToSwapWith));
                 }
             }
-            case INVERSION ->
-                    movesPerDirection.add(new InversionMove(playerNumber, currentCoordinates));
+            case INVERSION -> moves.add(PackedMove.inversion(cell));
             case BONUS -> {
-                movesPerDirection.add(new BonusMove(playerNumber, currentCoordinates, Bonus.BOMB));
-                movesPerDirection.add(
-                        new BonusMove(playerNumber, currentCoordinates, Bonus.OVERWRITE_STONE));
+                moves.add(PackedMove.bonus(cell, Bonus.BOMB));
+                moves.add(PackedMove.bonus(cell, Bonus.OVERWRITE_STONE));
             }
-            default -> movesPerDirection.add(new NormalMove(playerNumber, currentCoordinates));
-
+            default -> moves.add(PackedMove.normal(cell));
         }
-
-        return movesPerDirection;
     }
 
     /**
@@ -187,7 +476,7 @@ public final class MoveCalculator {
      * @return True if first neighbour allows moves, false if not
      */
     private static boolean isFirstNeighbourValid(TileReader tileReader, Tile playerValue) {
-        Coordinates ownTileCoordinates = tileReader.getCoordinates();
+        int ownTileCell = tileReader.getCell();
         // Check if tile has a neighbour in this direction
         if (!tileReader.hasNext()) {
             return false;
@@ -205,6 +494,6 @@ public final class MoveCalculator {
         }
 
         // Check if the neighbour is the same tile due to a transition
-        return tileReader.getCoordinates() != ownTileCoordinates;
+        return tileReader.getCell() != ownTileCell;
     }
 }
@@ -3,23 +3,26 @@ package game.logic;
 import board.*;
 import exceptions.BonusNotSpecifiedException;
 import game.Game;
-import game.Player;
-import move.*;
-
-import java.util.HashSet;
-import java.util.Set;
+import move.Bonus;
+import move.PackedMove;
+import util.IntList;
 
 public final class MoveExecutor {
 
-    public static void executeMove(Game game, Move move) {
+    /**
+     * @param move The move, see {@link PackedMove}.
+     */
+    public static void executeMove(Game game, int player, int move) {
+
+        int type = PackedMove.getType(move);
 
-        if (!(move instanceof BombMove)) {
-            executeColoringMove(game, move);
-            if(!(move instanceof OverwriteMove)){
-                game.totalTilesOccupiedCounter.incrementTotalTilesOccupied();
+        if (type != PackedMove.BOMB) {
+            executeColoringMove(game, player, move);
+            if (type != PackedMove.OVERWRITE) {
+                game.incrementTotalTilesOccupied();
             }
         } else {
-            executeBombMove(game, (BombMove) move);
+            executeBombMove(game, player, move);
         }
 
     }
@@ -32,50 +35,55 @@ public final class MoveExecutor {
     |-----------------------------------------------------------------------------------------------
     */
 
-    private static void executeColoringMove(Game game, Move move) {
+    private static void executeColoringMove(Game game, int player, int move) {
 
-        Tile playerValue = game.getPlayer(move.getPlayerNumber()).getPlayerValue();
+        Tile playerValue = Tile.fromInt(player);
+        int type = PackedMove.getType(move);
 
-        if (move instanceof OverwriteMove) {
-            game.getPlayer(move.getPlayerNumber()).decrementOverwriteStones();
+        if (type == PackedMove.OVERWRITE) {
+            game.changeOverwriteStones(player, -1);
         }
 
         // Color all tiles
-        Set<Coordinates> allTilesToColor =
-                getAllTilesToColor(game, playerValue, move.getCoordinates());
-
-        for (var coordinates : allTilesToColor) {
-            game.setTile(coordinates, playerValue);
-        }
-
-        if (move instanceof BonusMove) {
-            executeBonusLogic(game, (BonusMove) move);
-        }
+        IntList allTilesToColor = getAllTilesToColor(game, playerValue, PackedMove.getCell(move));
 
-        if (move instanceof ChoiceMove) {
-            executeChoiceLogic(game, (ChoiceMove) move);
+        for (int i = 0; i < allTilesToColor.size(); i++) {
+            game.setTile(allTilesToColor.get(i), playerValue);
         }
 
-        if (move instanceof InversionMove) {
-            executeInversionLogic(game);
+        switch (type) {
+            case PackedMove.BONUS -> executeBonusLogic(game, player, PackedMove.getBonus(move));
+            case PackedMove.CHOICE ->
+                    executeChoiceLogic(game, player, PackedMove.getPlayerToSwapWith(move));
+            case PackedMove.INVERSION -> executeInversionLogic(game);
+            default -> {
+            }
         }
     }
 
-    private static Set<Coordinates> getAllTilesToColor(Game game, Tile playerValue,
-                                                       Coordinates position) {
+    /**
+     * @return The cells to color. May contain a cell more than once.
+     */
+    private static IntList getAllTilesToColor(Game game, Tile playerValue, int position) {
 
-        Set<Coordinates> result = new HashSet<>();
+        IntList result = new IntList();
 
-        // Of course the Coordinates we set the stone on get colored
+        // Of course the cell we set the stone on gets colored
         result.add(position);
 
-        // Coloring in every Direction
-        for (Direction direction : Direction.values()) {
-            TileReader tileReader = new TileReader(game, position, direction);
+        TileReader tileReader = new TileReader(game);
+        IntList buffer = new IntList();
+
+        // A ray can visit every cell in every direction at most once, otherwise it runs in circles
+        // through transitions
+        int maxRayLength = game.getWidth() * game.getHeight() * 8;
 
-            Set<Coordinates> buffer = new HashSet<>();
+        // Coloring in every Direction
+        for (int direction = 0; direction < 8; direction++) {
+            tileReader.reset(position, direction);
+            buffer.clear();
 
-            while (tileReader.hasNext()) {
+            while (tileReader.hasNext() && tileReader.getTileNumber() <= maxRayLength) {
                 tileReader.next();
                 Tile currentTile = tileReader.getTile();
 
@@ -89,7 +97,7 @@ public final class MoveExecutor {
                 if (currentTile.isUnoccupied()) {
                     break;
                 }
-                if(tileReader.getCoordinates().equals(position)) {
+                if (tileReader.getCell() == position) {
                     break;
                 }
                 if (currentTile == playerValue) {
@@ -97,7 +105,7 @@ public final class MoveExecutor {
                     break;
                 }
 
-                buffer.add(tileReader.getCoordinates());
+                buffer.add(tileReader.getCell());
             }
         }
 
@@ -113,71 +121,41 @@ public final class MoveExecutor {
     |-----------------------------------------------------------------------------------------------
     */
 
-    private static void executeBonusLogic(Game game, BonusMove bonusMove) {
-        Player player = game.getPlayer(bonusMove.getPlayerNumber());
-        if (bonusMove.getBonus() == Bonus.BOMB) {
-            player.incrementBombs();
-        } else if (bonusMove.getBonus() == Bonus.OVERWRITE_STONE) {
-            player.incrementOverwriteStone();
+    private static void executeBonusLogic(Game game, int player, Bonus bonus) {
+        if (bonus == Bonus.BOMB) {
+            game.changeBombs(player, 1);
+        } else if (bonus == Bonus.OVERWRITE_STONE) {
+            game.changeOverwriteStones(player, 1);
         } else {
             throw new BonusNotSpecifiedException(
                     "Tried to execute bonus move without bonus action");
         }
     }
 
-    private static void executeChoiceLogic(Game game, ChoiceMove choiceMove) {
-        Player player = game.getPlayer(choiceMove.getPlayerNumber());
-        Player playerToSwapWith = game.getPlayer(choiceMove.getPlayerToSwapWith());
-
-        // Collect all occupied tiles of current player
-        var oldTilesPlayerFromCurrentPlayer = new HashSet<>(
-                game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(
-                        player.getPlayerValue()));
+    private static void executeChoiceLogic(Game game, int player, int playerToSwapWith) {
+        Tile playerValue = Tile.fromInt(player);
+        Tile playerToSwapWithValue = Tile.fromInt(playerToSwapWith);
 
-        // Iterate through all old tiles of player to swap with
-        for (Coordinates coordinates : new HashSet<>(
-                game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(
-                        playerToSwapWith.getPlayerValue()))) {
-            game.setTile(coordinates, player.getPlayerValue());
-        }
+        // Swap the tiles of both players
+        Tile[] mapping = Tile.values();
+        mapping[playerValue.ordinal()] = playerToSwapWithValue;
+        mapping[playerToSwapWithValue.ordinal()] = playerValue;
 
-        // Iterate through all old tiles of current player
-        for (Coordinates coordinates : oldTilesPlayerFromCurrentPlayer) {
-            game.setTile(coordinates, playerToSwapWith.getPlayerValue());
-        }
+        game.recolorPlayers(mapping);
     }
 
     private static void executeInversionLogic(Game game) {
 
-        // Overwriting Tiles in Board
-        Player[] players = game.getPlayers();
-
-        // Updating OccupiedTiles of all Players
-
-        var previousPlayer = players[players.length - 1];
-
-        // We need to create a copy of the coordinate set as we are altering it in the loop
-        // Else we get a ConcurrentModificationException.
-        Set<Coordinates> oldTilesFromPred = new HashSet<>(
-                game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(
-                        previousPlayer.getPlayerValue()));
-
-        Set<Coordinates> oldOwnTiles = null;
-
-        for (int i = 0; i < players.length; i++) {
-
-            if (i != 0) {
-                oldTilesFromPred = oldOwnTiles;
-            }
-
-            oldOwnTiles = new HashSet<>(game.coordinatesGroupedByTile.getAllCoordinatesWhereTileIs(
-                    players[i].getPlayerValue()));
-
-            for (Coordinates coordinates : oldTilesFromPred) {
-                game.setTile(coordinates, players[i].getPlayerValue());
-            }
+        int players = game.constants.initialPlayers();
 
+        // Every player gets the tiles of its predecessor, the first player those of the last
+        Tile[] mapping = Tile.values();
+        for (int i = 1; i <= players; i++) {
+            int previousPlayer = i == 1 ? players : i - 1;
+            mapping[Tile.fromInt(previousPlayer).ordinal()] = Tile.fromInt(i);
         }
+
+        game.recolorPlayers(mapping);
     }
 
     /*
@@ -188,20 +166,20 @@ public final class MoveExecutor {
     |-----------------------------------------------------------------------------------------------
     */
 
-    private static void executeBombMove(Game game, BombMove move) {
+    private static void executeBombMove(Game game, int player, int move) {
 
-        if (game.getPlayer(move.getPlayerNumber()).getBombs() == 0) {
+        if (game.getBombs(player) == 0) {
             throw new RuntimeException("No bombs available :(");
         }
 
         int radius = game.constants.bombRadius();
-        Set<Coordinates> coordinates = new HashSet<>();
-        coordinates.add(move.getCoordinates());
+        int target = PackedMove.getCell(move);
+        IntList cells = CoordinatesExpander.get(game).expand(game, target, radius);
 
-        for (Coordinates c : CoordinatesExpander.expandCoordinates(game, coordinates, radius)) {
-            game.setTile(c, Tile.WALL);
+        for (int i = 0; i < cells.size(); i++) {
+            game.setTile(cells.get(i), Tile.WALL);
         }
 
-        game.getPlayer(move.getPlayerNumber()).decrementBombs();
+        game.changeBombs(player, -1);
     }
 }
@@ -0,0 +1,333 @@
+package game.logic;
+
+import board.Bitboard;
+import board.NeighbourTable;
+import board.Tile;
+import game.CoordinatesGroupedByTile;
+import game.Game;
+import move.MoveList;
+import move.PackedMove;
+import util.IntList;
+
+/**
+ * Follows the rays of all stones of a player at once with bitsets, see {@link Bitboard}. For
+ * every direction, the runs of opponent stones behind the own stones are filled by shifting the
+ * bitsets with doubling distances (Kogge-Stone), so the work per direction grows with the
+ * logarithm of the longest run instead of with the number of stones.
+ * <p>
+ * Shifts only follow the regular grid. Rays that reach a cell with a transition in their direction
+ * may continue through the transition, which a shift cannot express. Their origins are collected,
+ * so that those rays can be walked one step at a time.
+ * <p>
+ * Holds scratch bitsets for one board size, so an instance must not be used by several threads.
+ */
+final class RayFill {
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Attributes
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    private final int width;
+    private final int height;
+
+    /**
+     * How far a regular step in a direction moves the cell index, indexed by direction value.
+     */
+    private final int[] shifts = new int[8];
+
+    /**
+     * For every direction, the cells that can be entered by a regular step in this direction.
+     * Excludes the column a shift would wrap into from the other side of the board and the bits
+     * beyond the last cell.
+     */
+    private final long[][] entryMasks = new long[8][];
+
+    /**
+     * Scratch bitsets, reused for every calculation.
+     */
+    private final long[] own;
+    private final long[] origins;
+    private final long[] players;
+    private final long[] opponents;
+    private final long[] free;
+    private final long[] expansions;
+    private final long[] generator;
+    private final long[] propagator;
+    private final long[] shifted;
+
+    /**
+     * The results of the last calculation, see {@link #calculate}.
+     */
+    final long[] targets;
+    final long[] overwrites;
+    final IntList transitionRays = new IntList();
+
+    /**
+     * Scratch lists for walking the transition rays: the moves found and the overwritable cells of
+     * a single ray.
+     */
+    final MoveList walkedMoves = new MoveList();
+    final IntList walkedOverwrites = new IntList();
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Constructor
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    RayFill(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        int cells = width * height;
+
+        for (int direction = 0; direction < 8; direction++) {
+            int deltaX = NeighbourTable.getDeltaX(direction);
+            shifts[direction] = NeighbourTable.getDeltaY(direction) * width + deltaX;
+
+            long[] mask = Bitboard.create(cells);
+            for (int cell = 0; cell < cells; cell++) {
+                int x = cell % width;
+                if ((deltaX == 1 && x == 0) || (deltaX == -1 && x == width - 1)) {
+                    continue;
+                }
+                Bitboard.set(mask, cell);
+            }
+            entryMasks[direction] = mask;
+        }
+
+        own = Bitboard.create(cells);
+        origins = Bitboard.create(cells);
+        players = Bitboard.create(cells);
+        opponents = Bitboard.create(cells);
+        free = Bitboard.create(cells);
+        expansions = Bitboard.create(cells);
+        generator = Bitboard.create(cells);
+        propagator = Bitboard.create(cells);
+        shifted = Bitboard.create(cells);
+        targets = Bitboard.create(cells);
+        overwrites = Bitboard.create(cells);
+    }
+
+    boolean fits(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Calculation
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Follow the rays of the player in all directions. Afterwards, {@link #targets} holds the
+     * unoccupied cells rays end on, {@link #overwrites} the player cells rays pass behind the first
+     * neighbour, and {@link #transitionRays} the origins and directions of the rays that have to be
+     * walked because they reach a transition, each encoded like a {@link NeighbourTable} entry.
+     * @param cells Bitset of the cells the rays may start from, or null for the whole board.
+     */
+    void calculate(Game game, int playerNumber, long[] cells) {
+        prepare(game);
+        follow(game, playerNumber, cells, false);
+    }
+
+    /**
+     * Gather the bitsets that are the same for all players. Has to be called before
+     * {@link #follow}, again after the board changed.
+     */
+    void prepare(Game game) {
+
+        CoordinatesGroupedByTile grouped = game.coordinatesGroupedByTile;
+
+        clear(players);
+        clear(free);
+        clear(expansions);
+
+        for (int player = 1; player <= 8; player++) {
+            grouped.addBitboard(Tile.fromInt(player), players);
+        }
+        grouped.addBitboard(Tile.EMPTY, free);
+        grouped.addBitboard(Tile.CHOICE, free);
+        grouped.addBitboard(Tile.INVERSION, free);
+        grouped.addBitboard(Tile.BONUS, free);
+        grouped.addBitboard(Tile.EXPANSION, expansions);
+    }
+
+    /**
+     * Follow the rays of the player in all directions, see {@link #calculate}. Needs the bitsets
+     * gathered by {@link #prepare}.
+     * @param stopAtMove Whether to stop at the first direction that yields a move. The results are
+     *                   incomplete then, but tell whether the player can move.
+     * @return Whether the shifts found a move. Rays through transitions are not considered.
+     */
+    boolean follow(Game game, int playerNumber, long[] cells, boolean stopAtMove) {
+
+        clear(own);
+        clear(targets);
+        clear(overwrites);
+        transitionRays.clear();
+
+        game.coordinatesGroupedByTile.addBitboard(Tile.fromInt(playerNumber), own);
+
+        // Rays run over the stones of other players and expansion stones
+        for (int i = 0; i < own.length; i++) {
+            opponents[i] = expansions[i] | (players[i] & ~own[i]);
+            origins[i] = cells == null ? own[i] : own[i] & cells[i];
+        }
+
+        // Overwrites are only moves if the player has overwrite stones left
+        boolean canOverwrite = game.getOverwriteStones(playerNumber) > 0;
+        boolean found = false;
+
+        for (int direction = 0; direction < 8; direction++) {
+            found |= fillDirection(game, direction, canOverwrite);
+            if (found && stopAtMove) {
+                return true;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @return Whether a move was found in the direction.
+     */
+    private boolean fillDirection(Game game, int direction, boolean canOverwrite) {
+
+        int shift = shifts[direction];
+        long[] mask = entryMasks[direction];
+
+        // The first neighbours, which have to be opponents
+        Bitboard.shift(origins, shift, shifted);
+        boolean any = false;
+        for (int i = 0; i < generator.length; i++) {
+            generator[i] = shifted[i] & mask[i] & opponents[i];
+            propagator[i] = opponents[i] & mask[i];
+            any |= generator[i] != 0;
+        }
+
+        boolean found = any && fillRuns(shift, mask, canOverwrite);
+
+        addTransitionRays(game.getTransitionCells(direction), direction);
+
+        return found;
+    }
+
+    /**
+     * @return Whether a move was found behind the runs.
+     */
+    private boolean fillRuns(int shift, long[] mask, boolean canOverwrite) {
+
+        // Extend the runs by doubling distances. After every round, the propagator holds the cells
+        // that end a run of opponents twice as long as before, so the fill stops once it is empty.
+        for (int distance = shift; ; distance *= 2) {
+            Bitboard.shift(generator, distance, shifted);
+            for (int i = 0; i < generator.length; i++) {
+                generator[i] |= propagator[i] & shifted[i];
+            }
+            Bitboard.shift(propagator, distance, shifted);
+            boolean running = false;
+            for (int i = 0; i < propagator.length; i++) {
+                propagator[i] &= shifted[i];
+                running |= propagator[i] != 0;
+            }
+            if (!running) {
+                break;
+            }
+        }
+
+        // One step behind the runs, rays end on unoccupied cells or pass player cells
+        Bitboard.shift(generator, shift, shifted);
+        long found = 0;
+        for (int i = 0; i < generator.length; i++) {
+            long ends = shifted[i] & mask[i];
+            targets[i] |= ends & free[i];
+            overwrites[i] |= ends & players[i];
+            found |= ends & (canOverwrite ? free[i] | players[i] : free[i]);
+        }
+        return found != 0;
+    }
+
+    /**
+     * Collect the rays in the direction that start on or run over a cell with a transition in this
+     * direction. They are found by walking back from the cell to the own stone they start from.
+     */
+    private void addTransitionRays(long[] transitionCells, int direction) {
+        int shift = shifts[direction];
+
+        for (int i = 0; i < transitionCells.length; i++) {
+            long hits = transitionCells[i] & (origins[i] | generator[i]);
+            while (hits != 0) {
+                int cell = (i << 6) + Long.numberOfTrailingZeros(hits);
+                hits &= hits - 1;
+
+                while (!Bitboard.get(origins, cell)) {
+                    cell -= shift;
+                }
+                transitionRays.add(NeighbourTable.encode(cell, direction));
+            }
+        }
+    }
+
+    /**
+     * Merge the {@link #walkedMoves} into {@link #targets} and {@link #overwrites}.
+     */
+    void addWalkedMoves() {
+        for (int i = 0; i < walkedMoves.size(); i++) {
+            int move = walkedMoves.get(i);
+            if (PackedMove.getType(move) == PackedMove.OVERWRITE) {
+                Bitboard.set(overwrites, PackedMove.getCell(move));
+            }
+            else {
+                Bitboard.set(targets, PackedMove.getCell(move));
+            }
+        }
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Counting
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * @return The number of {@link #targets} holding the tile.
+     */
+    int countTargets(Game game, Tile tile) {
+        clear(shifted);
+        game.coordinatesGroupedByTile.addBitboard(tile, shifted);
+        int count = 0;
+        for (int i = 0; i < targets.length; i++) {
+            count += Long.bitCount(targets[i] & shifted[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of cells that can be overwritten: {@link #overwrites} and all expansion
+     * stones.
+     */
+    int countOverwrites() {
+        int count = 0;
+        for (int i = 0; i < overwrites.length; i++) {
+            count += Long.bitCount(overwrites[i] | expansions[i]);
+        }
+        return count;
+    }
+
+    private static void clear(long[] bitboard) {
+        for (int i = 0; i < bitboard.length; i++) {
+            bitboard[i] = 0;
+        }
+    }
+}
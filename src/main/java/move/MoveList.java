@@ -0,0 +1,181 @@
+package move;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of moves encoded as ints, see {@link PackedMove}. Meant to be reused: clearing
+ * keeps the allocated capacity, so filling it again allocates nothing.
+ */
+public class MoveList {
+
+    private int[] moves;
+
+    private int size;
+
+    /**
+     * Scratch space for sorting, kept to be reused.
+     */
+    private long[] sortEntries = new long[0];
+    private int[] sortBuffer = new int[0];
+
+    public MoveList() {
+        this(16);
+    }
+
+    public MoveList(int initialCapacity) {
+        moves = new int[Math.max(initialCapacity, 1)];
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Access
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    public void addAll(MoveList other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.moves[i]);
+        }
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove all moves. Keeps the allocated capacity, so the list can be reused.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Replace the moves by those of another list.
+     */
+    public void copyFrom(MoveList other) {
+        clear();
+        addAll(other);
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Ordering
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Sort the moves ascending and remove duplicates.
+     */
+    public void sortAndRemoveDuplicates() {
+        Arrays.sort(moves, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || moves[i] != moves[unique - 1]) {
+                moves[unique++] = moves[i];
+            }
+        }
+        size = unique;
+    }
+
+    /**
+     * Sort the moves ascending by the given keys. Moves with equal keys keep their order.
+     * @param keys The key of every move, at the same index as the move.
+     */
+    public void sortByKeys(int[] keys) {
+        if (sortEntries.length < size) {
+            sortEntries = new long[moves.length];
+            sortBuffer = new int[moves.length];
+        }
+
+        // The index in the lower bits keeps equal keys in order
+        for (int i = 0; i < size; i++) {
+            sortEntries[i] = ((long) keys[i] << 32) | i;
+        }
+        Arrays.sort(sortEntries, 0, size);
+
+        for (int i = 0; i < size; i++) {
+            sortBuffer[i] = moves[(int) sortEntries[i]];
+        }
+        System.arraycopy(sortBuffer, 0, moves, 0, size);
+    }
+
+    /**
+     * Reverse the order of the moves.
+     */
+    public void reverse() {
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            int move = moves[i];
+            moves[i] = moves[j];
+            moves[j] = move;
+        }
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Overrides
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * Two lists are equal if they hold the same moves in the same order.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MoveList that = (MoveList) o;
+        return Arrays.equals(moves, 0, size, that.moves, 0, that.size);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + moves[i];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            result.append(i > 0 ? ", " : "").append(PackedMove.toString(moves[i]));
+        }
+        return result.append("]").toString();
+    }
+}
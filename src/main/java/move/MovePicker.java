@@ -0,0 +1,132 @@
+package move;
+
+import java.util.Arrays;
+
+/**
+ * Hands out the moves of a list one at a time, ordered by a key per move, without sorting the
+ * whole list up front. The first moves are picked by a single pass over the remaining ones each,
+ * so if a search cuts off after one or two moves, the rest is never ordered. Only once more moves
+ * are asked for, the remaining ones are sorted at once.
+ * <p>
+ * Moves with equal keys come in the same order as {@link MoveList#sortByKeys(int[])} followed by
+ * {@link MoveList#reverse()} (highest first) or without it (lowest first) would give. Meant to be
+ * reused: filling it again allocates nothing.
+ */
+public class MovePicker {
+
+    /**
+     * How many moves are picked one at a time before the remaining ones are sorted.
+     */
+    private static final int LAZY_PICKS = 3;
+
+    private final MoveList moves = new MoveList();
+
+    /**
+     * The key of every move in the upper bits and its index in the lower ones. The entries before
+     * {@link #ordered} are in their final order.
+     */
+    private long[] entries = new long[0];
+
+    private int size;
+    private int ordered;
+    private int position;
+    private boolean highestFirst;
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Filling
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * @return The list to write the moves into before calling {@link #order(int[], boolean)}.
+     */
+    public MoveList getMoves() {
+        return moves;
+    }
+
+    /**
+     * Start handing out the moves of {@link #getMoves()} ordered by the given keys.
+     * @param keys         The key of every move, at the same index as the move.
+     * @param highestFirst Whether the move with the highest key comes first.
+     */
+    public void order(int[] keys, boolean highestFirst) {
+        size = moves.size();
+        if (entries.length < size) {
+            entries = new long[Math.max(size, entries.length * 2)];
+        }
+
+        // The index in the lower bits makes all entries distinct and keeps equal keys in order
+        for (int i = 0; i < size; i++) {
+            entries[i] = ((long) keys[i] << 32) | i;
+        }
+
+        this.highestFirst = highestFirst;
+        ordered = 0;
+        position = 0;
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Picking
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public boolean hasNext() {
+        return position < size;
+    }
+
+    /**
+     * @return The next move in order.
+     */
+    public int next() {
+        if (position == ordered) {
+            if (ordered < LAZY_PICKS) {
+                pickBest();
+            }
+            else {
+                sortRemaining();
+            }
+        }
+        return moves.get((int) entries[position++]);
+    }
+
+    /**
+     * Hand out the moves from the first one again. Moves already handed out are not ordered
+     * again.
+     */
+    public void rewind() {
+        position = 0;
+    }
+
+    /**
+     * Move the best remaining entry to the end of the ordered ones.
+     */
+    private void pickBest() {
+        int best = ordered;
+        for (int i = ordered + 1; i < size; i++) {
+            if (highestFirst ? entries[i] > entries[best] : entries[i] < entries[best]) {
+                best = i;
+            }
+        }
+        long entry = entries[best];
+        entries[best] = entries[ordered];
+        entries[ordered++] = entry;
+    }
+
+    private void sortRemaining() {
+        Arrays.sort(entries, ordered, size);
+        if (highestFirst) {
+            for (int i = ordered, j = size - 1; i < j; i++, j--) {
+                long entry = entries[i];
+                entries[i] = entries[j];
+                entries[j] = entry;
+            }
+        }
+        ordered = size;
+    }
+}
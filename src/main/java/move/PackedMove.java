@@ -0,0 +1,167 @@
+package move;
+
+import board.Coordinates;
+
+/**
+ * Moves encoded in a single int, so that generating, storing and comparing them allocates
+ * nothing. The player is not part of the encoding, a move always belongs to the player whose
+ * moves are generated or executed.
+ * <p>
+ * The cell index of the target occupies the upper bits, shifted left by 8. Below it lie the type
+ * (bits 4 to 7) and a payload (bits 0 to 3): the player to swap with for choice moves and the
+ * ordinal of the {@link Bonus} for bonus moves, otherwise 0. Ordering encoded moves orders them by
+ * cell first.
+ * <p>
+ * The {@link Move} classes remain as an adapter for the network, see {@link #toMove} and
+ * {@link #fromMove}.
+ */
+public final class PackedMove {
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Types
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public static final int NORMAL = 0;
+    public static final int OVERWRITE = 1;
+    public static final int CHOICE = 2;
+    public static final int INVERSION = 3;
+    public static final int BONUS = 4;
+    public static final int BOMB = 5;
+
+    private static final Bonus[] BONUSES = Bonus.values();
+
+    private PackedMove() {
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Encoding
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public static int create(int cell, int type, int payload) {
+        return (cell << 8) | (type << 4) | payload;
+    }
+
+    public static int normal(int cell) {
+        return create(cell, NORMAL, 0);
+    }
+
+    public static int overwrite(int cell) {
+        return create(cell, OVERWRITE, 0);
+    }
+
+    public static int choice(int cell, int playerToSwapWith) {
+        return create(cell, CHOICE, playerToSwapWith);
+    }
+
+    public static int inversion(int cell) {
+        return create(cell, INVERSION, 0);
+    }
+
+    public static int bonus(int cell, Bonus bonus) {
+        return create(cell, BONUS, bonus.ordinal());
+    }
+
+    public static int bomb(int cell) {
+        return create(cell, BOMB, 0);
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Decoding
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    public static int getCell(int move) {
+        return move >>> 8;
+    }
+
+    public static int getType(int move) {
+        return (move >>> 4) & 0xF;
+    }
+
+    /**
+     * @return The player to swap with of a choice move.
+     */
+    public static int getPlayerToSwapWith(int move) {
+        return move & 0xF;
+    }
+
+    /**
+     * @return The bonus of a bonus move.
+     */
+    public static Bonus getBonus(int move) {
+        return BONUSES[move & 0xF];
+    }
+
+    public static boolean isSpecial(int move) {
+        int type = getType(move);
+        return type == BONUS || type == CHOICE || type == INVERSION;
+    }
+
+    public static boolean isOverwriteBonus(int move) {
+        return getType(move) == BONUS && getBonus(move) == Bonus.OVERWRITE_STONE;
+    }
+
+    /*
+    |-----------------------------------------------------------------------------------------------
+    |
+    |   Adapter
+    |
+    |-----------------------------------------------------------------------------------------------
+    */
+
+    /**
+     * @param coordinates The coordinates of the move's cell.
+     * @return The move as object, for the given player.
+     */
+    public static Move toMove(int move, int player, Coordinates coordinates) {
+        return switch (getType(move)) {
+            case NORMAL -> new NormalMove(player, coordinates);
+            case OVERWRITE -> new OverwriteMove(player, coordinates);
+            case CHOICE -> new ChoiceMove(player, coordinates, getPlayerToSwapWith(move));
+            case INVERSION -> new InversionMove(player, coordinates);
+            case BONUS -> new BonusMove(player, coordinates, getBonus(move));
+            case BOMB -> new BombMove(player, coordinates);
+            default -> throw new IllegalArgumentException("Unknown move type: " + getType(move));
+        };
+    }
+
+    /**
+     * @param cell The cell index of the move's coordinates.
+     * @return The encoded move. The player is dropped.
+     */
+    public static int fromMove(Move move, int cell) {
+        if (move instanceof ChoiceMove choiceMove) {
+            return choice(cell, choiceMove.getPlayerToSwapWith());
+        }
+        if (move instanceof BonusMove bonusMove) {
+            return bonus(cell, bonusMove.getBonus());
+        }
+        if (move instanceof OverwriteMove) {
+            return overwrite(cell);
+        }
+        if (move instanceof InversionMove) {
+            return inversion(cell);
+        }
+        if (move instanceof BombMove) {
+            return bomb(cell);
+        }
+        return normal(cell);
+    }
+
+    public static String toString(int move) {
+        String[] types = {"Normal", "Overwrite", "Choice", "Inversion", "Bonus", "Bomb"};
+        return types[getType(move)] + "Move{cell=" + getCell(move) + ", payload=" + (move & 0xF) +
+                "}";
+    }
+}
@@ -65,7 +65,9 @@ public class NetworkClientAdapter {
             depth = depthLimit;
         }
 
-        Move result = client.search(timer, depth);
+        int packedResult = client.search(timer, depth);
+        Move result = PackedMove.toMove(packedResult, playerNumber,
+                game.getCoordinates(PackedMove.getCell(packedResult)));
 
         logger.log("Sending " + result.getClass().getSimpleName() + result.getCoordinates());
 
@@ -87,7 +89,7 @@ public class NetworkClientAdapter {
 
     public void receiveMove(short x, short y, byte type, byte playerNumber) {
 
-        Coordinates coordinates = new Coordinates(x, y);
+        Coordinates coordinates = game.getCoordinates(x, y);
 
         Move move;
 
@@ -0,0 +1,68 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints. Avoids boxing when collecting cell indices and similar values.
+ */
+public class IntList {
+
+    private int[] values;
+
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int initialCapacity) {
+        values = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Append all values of another list.
+     */
+    public void addAll(IntList other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.values[i]);
+        }
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all values. Keeps the allocated capacity, so the list can be reused.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Remove all values from the given index on.
+     */
+    public void truncate(int size) {
+        this.size = Math.min(this.size, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(values, size));
+    }
+}